@@ -0,0 +1,81 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.io.ClassPathResource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ClassPathResourceBenchmark {
+    @Param({"4096", "1048576"})
+    int size;
+
+    @Param({"8192", "65536"})
+    int bufferSize;
+
+    private Path dir;
+    private ClassLoader contextClassLoader;
+    private ClassPathResource resource;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("rabbit-bench");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(dir.resolve("data.bin"), data);
+        // the resource is loaded by the context class loader.
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{dir.toUri().toURL()}, contextClassLoader));
+        resource = new ClassPathResource("data.bin", bufferSize);
+        out = new ByteArrayOutputStream(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        Files.deleteIfExists(dir.resolve("data.bin"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public int transferTo() throws IOException {
+        out.reset();
+        resource.transferTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public long transferToDiscard() throws IOException {
+        CountingOutputStream counting = new CountingOutputStream();
+        resource.transferTo(counting);
+        return counting.count;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
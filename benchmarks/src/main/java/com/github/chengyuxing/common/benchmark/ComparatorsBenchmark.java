@@ -0,0 +1,61 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.script.lang.Comparators;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ComparatorsBenchmark {
+    @Param({"int", "mixed-number", "string", "blank", "regex"})
+    String kind;
+
+    private Object a;
+    private String op;
+    private Object b;
+
+    @Setup
+    public void setup() {
+        switch (kind) {
+            case "int":
+                a = 10;
+                op = ">";
+                b = 5;
+                break;
+            case "mixed-number":
+                a = 10L;
+                op = "<=";
+                b = new BigDecimal("10.5");
+                break;
+            case "string":
+                a = "rabbit";
+                op = "==";
+                b = "rabbit";
+                break;
+            case "blank":
+                a = Collections.emptyList();
+                op = "!=";
+                b = "";
+                break;
+            case "regex":
+                a = "13800000000";
+                op = "@";
+                b = "^1\\d{10}$";
+                break;
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+
+    @Benchmark
+    public boolean compare() {
+        return Comparators.compare(a, op, b);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.DataRow;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DataRowBenchmark {
+    @Param({"8", "64"})
+    int width;
+
+    private DataRow row;
+    private String lastKey;
+
+    @Setup
+    public void setup() {
+        row = new DataRow(width);
+        for (int i = 0; i < width; i++) {
+            switch (i % 4) {
+                case 0:
+                    row.put("c" + i, "value_" + i);
+                    break;
+                case 1:
+                    row.put("c" + i, i);
+                    break;
+                case 2:
+                    row.put("c" + i, (long) i * 1000);
+                    break;
+                default:
+                    // the value is converted by the typed getters.
+                    row.put("c" + i, new BigDecimal(i + ".5"));
+                    break;
+            }
+        }
+        lastKey = "c" + (width - 1);
+    }
+
+    @Benchmark
+    public void getByKey(Blackhole bh) {
+        bh.consume(row.getString("c0"));
+        bh.consume(row.getInt("c1"));
+        bh.consume(row.getLong("c2"));
+        bh.consume(row.getDouble(lastKey));
+    }
+
+    @Benchmark
+    public void getByIndex(Blackhole bh) {
+        bh.consume(row.getString(0));
+        bh.consume(row.getInt(1));
+        bh.consume(row.getLong(2));
+        bh.consume(row.getDouble(width - 1));
+    }
+}
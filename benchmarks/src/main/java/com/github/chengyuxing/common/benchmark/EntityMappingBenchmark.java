@@ -0,0 +1,266 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.util.ValueUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class EntityMappingBenchmark {
+    @Param({"narrow", "wide"})
+    String width;
+
+    private Class<?> type;
+    private Object entity;
+    private Map<String, Object> map;
+
+    @Setup
+    public void setup() {
+        if (width.equals("narrow")) {
+            type = NarrowEntity.class;
+            entity = NarrowEntity.sample();
+        } else {
+            type = WideEntity.class;
+            entity = WideEntity.sample();
+        }
+        map = ValueUtils.entityToMap(entity, HashMap::new);
+    }
+
+    @Benchmark
+    public Object mapToEntity() {
+        return ValueUtils.mapToEntity(map, type);
+    }
+
+    @Benchmark
+    public Map<String, Object> entityToMap() {
+        return ValueUtils.entityToMap(entity, HashMap::new);
+    }
+
+    public static class NarrowEntity {
+        private Integer id;
+        private String name;
+        private Integer age;
+        private String address;
+
+        static NarrowEntity sample() {
+            NarrowEntity e = new NarrowEntity();
+            e.id = 1;
+            e.name = "cyx";
+            e.age = 30;
+            e.address = "kunming";
+            return e;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+    }
+
+    public static class WideEntity extends NarrowEntity {
+        private Long version;
+        private Double score;
+        private Boolean enabled;
+        private String email;
+        private String phone;
+        private String city;
+        private String country;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+        private String remark;
+        private Long ownerId;
+        private Integer level;
+        private String tag;
+        private String type;
+        private Double balance;
+        private String status;
+
+        static WideEntity sample() {
+            WideEntity e = new WideEntity();
+            e.setId(1);
+            e.setName("cyx");
+            e.setAge(30);
+            e.setAddress("kunming");
+            e.version = 3L;
+            e.score = 99.5;
+            e.enabled = true;
+            e.email = "cyx@example.com";
+            e.phone = "13800000000";
+            e.city = "kunming";
+            e.country = "china";
+            e.createdAt = LocalDateTime.of(2024, 1, 1, 8, 30);
+            e.updatedAt = LocalDateTime.of(2024, 6, 1, 18, 0);
+            e.remark = "remark";
+            e.ownerId = 10L;
+            e.level = 2;
+            e.tag = "a";
+            e.type = "b";
+            e.balance = 1024.25;
+            e.status = "active";
+            return e;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public void setCountry(String country) {
+            this.country = country;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(LocalDateTime createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(LocalDateTime updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+
+        public Long getOwnerId() {
+            return ownerId;
+        }
+
+        public void setOwnerId(Long ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        public Integer getLevel() {
+            return level;
+        }
+
+        public void setLevel(Integer level) {
+            this.level = level;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public void setTag(String tag) {
+            this.tag = tag;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Double getBalance() {
+            return balance;
+        }
+
+        public void setBalance(Double balance) {
+            this.balance = balance;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+    }
+}
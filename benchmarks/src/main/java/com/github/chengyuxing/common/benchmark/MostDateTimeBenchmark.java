@@ -0,0 +1,32 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.MostDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class MostDateTimeBenchmark {
+    @Param({
+            "20240105183012",
+            "2024-01-05",
+            "2024-01-05 18:30:12",
+            "2024/01/05 18:30:12.123",
+            "2019-09-26T03:45:36.656+0800",
+            "Wed, 04 Jan 2023 09:36:48 GMT",
+            "Wed Jan 04 18:52:01 CST 2023",
+            "二〇二六年六月二十六日"
+    })
+    String datetime;
+
+    @Benchmark
+    public LocalDateTime toLocalDateTime() {
+        return MostDateTime.toLocalDateTime(datetime);
+    }
+}
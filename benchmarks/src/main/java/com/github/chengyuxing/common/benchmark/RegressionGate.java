@@ -0,0 +1,168 @@
+package com.github.chengyuxing.common.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * <h2>Allocation and latency regression gate</h2>
+ * <p>Runs {@link RegressionGateBenchmark} with the gc profiler and checks the results
+ * against the budgets file, exit with status 1 if any budget is exceeded or any allocation budget is missing.</p>
+ * <p>Budget keys are {@code <benchmark>.<metric>}, metrics:</p>
+ * <ul>
+ *     <li>{@code alloc}: allocated bytes per operation ({@code gc.alloc.rate.norm}), required,
+ *     it is nearly independent of the machine for the same JDK;</li>
+ *     <li>{@code p99}: 99th percentile latency in microseconds, optional, it is machine specific,
+ *     the key without value is not checked.</li>
+ * </ul>
+ * <p>Besides the budgets, the allocation of a benchmark which reuses the state must be below the allocation
+ * of the benchmark which creates the state each call, e.g. {@code executeScriptReusedContext} is below
+ * {@code executeScript} only if {@link com.github.chengyuxing.common.script.ast.impl.EvalContext#reset(java.util.Map) reset}
+ * and the evaluation do not allocate more than a new context.</p>
+ * <p>Run with {@code -Dgate.record=<headroom>} (e.g. {@code 1.1}) to write the measured allocations multiplied
+ * by the headroom to the budgets file, add {@code -Dgate.recordLatency=true} to record the latencies too
+ * on the machine which runs the gate.</p>
+ * <p>Usage: {@code java -cp benchmarks.jar com.github.chengyuxing.common.benchmark.RegressionGate [budgets file]}</p>
+ */
+public final class RegressionGate {
+    private static final String ALLOC = "alloc";
+    private static final String P99 = "p99";
+    /**
+     * The allocation of the key must be below the allocation of the value.
+     */
+    private static final Map<String, String> BELOW = Collections.singletonMap(
+            "RegressionGateBenchmark.executeScriptReusedContext." + ALLOC,
+            "RegressionGateBenchmark.executeScript." + ALLOC);
+
+    private RegressionGate() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path budgetsFile = Paths.get(args.length > 0 ? args[0] : "budgets.properties");
+        Options options = new OptionsBuilder()
+                .include(RegressionGateBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        Map<String, Double> measured = measure(new Runner(options).run());
+
+        String record = System.getProperty("gate.record");
+        if (record != null) {
+            writeBudgets(budgetsFile, measured, Double.parseDouble(record), Boolean.getBoolean("gate.recordLatency"));
+            System.out.println("Budgets are recorded to " + budgetsFile.toAbsolutePath());
+            return;
+        }
+        int failed = check(readBudgets(budgetsFile), measured);
+        if (failed > 0) {
+            System.out.println(failed + " budget(s) exceeded, missing or not below the fresh state allocation.");
+            System.exit(1);
+        }
+        System.out.println("All budgets are met.");
+    }
+
+    static Map<String, Double> measure(Collection<RunResult> results) {
+        Map<String, Double> measured = new TreeMap<>();
+        for (RunResult result : results) {
+            String name = name(result.getParams());
+            measured.put(name + '.' + P99, result.getPrimaryResult().getStatistics().getPercentile(99));
+            for (Map.Entry<String, Result> e : result.getSecondaryResults().entrySet()) {
+                // older jmh versions prefix the secondary result with a middle dot.
+                if (e.getKey().endsWith("gc.alloc.rate.norm")) {
+                    measured.put(name + '.' + ALLOC, e.getValue().getScore());
+                }
+            }
+        }
+        return measured;
+    }
+
+    static int check(Map<String, Double> budgets, Map<String, Double> measured) {
+        int failed = 0;
+        System.out.printf("%-55s %15s %15s  %s%n", "Metric", "Measured", "Budget", "Status");
+        for (Map.Entry<String, Double> e : measured.entrySet()) {
+            Double budget = budgets.get(e.getKey());
+            String status;
+            if (budget == null) {
+                if (e.getKey().endsWith('.' + ALLOC)) {
+                    status = "MISSING";
+                    failed++;
+                } else {
+                    status = "NOT CHECKED";
+                }
+            } else if (e.getValue() > budget) {
+                status = "EXCEEDED";
+                failed++;
+            } else {
+                status = "OK";
+            }
+            System.out.printf("%-55s %15.2f %15s  %s%n", e.getKey(), e.getValue(), budget == null ? "-" : String.format("%.2f", budget), status);
+        }
+        for (Map.Entry<String, String> e : BELOW.entrySet()) {
+            Double value = measured.get(e.getKey());
+            Double bound = measured.get(e.getValue());
+            if (value == null || bound == null) {
+                continue;
+            }
+            String status = "OK";
+            if (value >= bound) {
+                status = "NOT BELOW";
+                failed++;
+            }
+            System.out.printf("%-55s %15.2f %15s  %s%n", e.getKey(), value, "< " + String.format("%.2f", bound), status);
+        }
+        return failed;
+    }
+
+    private static String name(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        int method = benchmark.lastIndexOf('.');
+        StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1));
+        for (String key : params.getParamsKeys()) {
+            name.append('[').append(key).append('=').append(params.getParam(key)).append(']');
+        }
+        return name.toString();
+    }
+
+    static Map<String, Double> readBudgets(Path file) throws IOException {
+        Map<String, Double> budgets = new HashMap<>();
+        if (!Files.exists(file)) {
+            return budgets;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (!value.isEmpty()) {
+                budgets.put(key, Double.parseDouble(value));
+            }
+        }
+        return budgets;
+    }
+
+    static void writeBudgets(Path file, Map<String, Double> measured, double headroom, boolean latency) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Budgets of the regression gate, recorded on " + System.getProperty("java.vm.name") + " "
+                    + System.getProperty("java.version") + " with headroom " + headroom + ".\n");
+            writer.write("# <benchmark>.alloc: bytes per operation, required.\n");
+            writer.write("# <benchmark>.p99: 99th percentile latency in microseconds, machine specific, the key without value is not checked.\n");
+            for (Map.Entry<String, Double> e : measured.entrySet()) {
+                boolean record = latency || e.getKey().endsWith('.' + ALLOC);
+                writer.write(e.getKey() + " =" + (record ? " " + (long) Math.ceil(e.getValue() * headroom) : "") + "\n");
+            }
+        }
+    }
+}
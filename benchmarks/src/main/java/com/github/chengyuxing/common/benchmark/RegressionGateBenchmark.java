@@ -0,0 +1,77 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.StringFormatter;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import com.github.chengyuxing.common.util.ValueUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Representative workloads checked by {@link RegressionGate}, the latency is sampled
+ * for the percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RegressionGateBenchmark {
+    static final int SCRIPT_LINES = 200;
+    static final int ROWS = 100_000;
+    static final int TEMPLATES = 1_000;
+
+    private final RabbitScriptEngine engine = new RabbitScriptEngine();
+    private final StringFormatter formatter = new StringFormatter();
+    private ScriptAst ast;
+    private Map<String, Object> args;
+    private EvalContext context;
+    private List<Map<String, Object>> rows;
+    private String template;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        ast = engine.compile(Workloads.script(SCRIPT_LINES));
+        args = Workloads.scriptArgs(10);
+        context = new EvalContext(args, false);
+        rows = Workloads.rows(ROWS);
+        template = Workloads.template(10, true);
+        data = Workloads.templateData(10);
+    }
+
+    @Benchmark
+    public EvalResult executeScript() {
+        return engine.execute(ast, new EvalContext(args, false));
+    }
+
+    /**
+     * The context is reused, the allocation of this workload is the per-call allocation
+     * of the evaluation.
+     */
+    @Benchmark
+    public EvalResult executeScriptReusedContext() {
+        return engine.execute(ast, context.reset(args));
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole bh) {
+        for (Map<String, Object> row : rows) {
+            bh.consume(ValueUtils.mapToEntity(row, EntityMappingBenchmark.WideEntity.class));
+        }
+    }
+
+    @Benchmark
+    public void renderTemplates(Blackhole bh) {
+        for (int i = 0; i < TEMPLATES; i++) {
+            bh.consume(formatter.format(template, data));
+        }
+    }
+}
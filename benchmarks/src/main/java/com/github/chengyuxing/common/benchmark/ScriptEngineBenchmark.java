@@ -0,0 +1,54 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ScriptEngineBenchmark {
+    @Param({"20", "200", "2000"})
+    int lines;
+
+    @Param({"1", "10", "100"})
+    int ids;
+
+    private final RabbitScriptEngine engine = new RabbitScriptEngine();
+    private String script;
+    private String modifiedScript;
+    private ScriptAst ast;
+    private Map<String, Object> args;
+
+    @Setup
+    public void setup() {
+        script = Workloads.script(lines);
+        // the first line changed, the other fragments are reusable.
+        modifiedScript = script.replaceFirst("select id, name, type", "select id, name");
+        ast = engine.recompile(null, script);
+        args = Workloads.scriptArgs(ids);
+    }
+
+    @Benchmark
+    public ScriptAst compile() {
+        return engine.compile(script);
+    }
+
+    @Benchmark
+    public ScriptAst recompile() {
+        return engine.recompile(ast, modifiedScript);
+    }
+
+    @Benchmark
+    public EvalResult execute() {
+        return engine.execute(ast, new EvalContext(args, false));
+    }
+}
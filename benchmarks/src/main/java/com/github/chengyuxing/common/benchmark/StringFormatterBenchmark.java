@@ -0,0 +1,36 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.StringFormatter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class StringFormatterBenchmark {
+    @Param({"2", "10", "50"})
+    int holders;
+
+    @Param({"false", "true"})
+    boolean nested;
+
+    private final StringFormatter formatter = new StringFormatter();
+    private String template;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        template = Workloads.template(holders, nested);
+        data = Workloads.templateData(holders);
+    }
+
+    @Benchmark
+    public String format() {
+        return formatter.format(template, data);
+    }
+}
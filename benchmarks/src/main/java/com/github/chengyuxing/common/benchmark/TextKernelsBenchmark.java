@@ -0,0 +1,123 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.console.AnsiStyle;
+import com.github.chengyuxing.common.console.Printer;
+import com.github.chengyuxing.common.console.Style;
+import com.github.chengyuxing.common.util.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The char scanners of {@link StringUtils#removeEmptyLine(String)}, {@link StringUtils#isNumber(Object)}
+ * and {@link Printer#colorful(String, AnsiStyle...)} compared with the regex implementations they replaced,
+ * the setup fails if any result differs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TextKernelsBenchmark {
+    private static final Pattern EMPTY_LINE = Pattern.compile("\\s*\r?\n");
+    private static final Pattern ANSI_CODE = Pattern.compile("\033\\[[\\d;]+m");
+    private static final AnsiStyle[] STYLES = {Style.RED};
+
+    @Param({"1024", "1048576"})
+    int size;
+
+    private String text;
+    private String styled;
+    private Object[] values;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append("    \t  \r\n");
+                    break;
+                case 1:
+                    sb.append("\n\n");
+                    break;
+                default:
+                    sb.append("    select id, name from test.user where id = ").append(random.nextInt(1000)).append('\n');
+                    break;
+            }
+        }
+        text = sb.toString();
+        styled = text.replace("select", "\033[1;32mselect\033[0m");
+        values = new Object[size / 8];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 5) {
+                case 0:
+                    values[i] = i;
+                    break;
+                case 1:
+                    values[i] = (long) i * 31;
+                    break;
+                case 2:
+                    values[i] = new BigDecimal(i + ".25");
+                    break;
+                case 3:
+                    values[i] = "-" + i + "." + i;
+                    break;
+                default:
+                    values[i] = "id_" + i;
+                    break;
+            }
+        }
+        check(EMPTY_LINE.matcher(text).replaceAll("\n"), StringUtils.removeEmptyLine(text), "removeEmptyLine");
+        check("\033[" + STYLES[0].code() + "m" + ANSI_CODE.matcher(styled).replaceAll("") + "\033[0m", Printer.colorful(styled, STYLES), "colorful");
+        for (Object value : values) {
+            check(StringUtils.NUMBER_PATTERN.matcher(value.toString()).matches(), StringUtils.isNumber(value), "isNumber(" + value + ")");
+        }
+    }
+
+    private static void check(Object expected, Object actual, String name) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " differs from the regex implementation");
+        }
+    }
+
+    @Benchmark
+    public String removeEmptyLineRegex() {
+        return EMPTY_LINE.matcher(text).replaceAll("\n");
+    }
+
+    @Benchmark
+    public String removeEmptyLine() {
+        return StringUtils.removeEmptyLine(text);
+    }
+
+    @Benchmark
+    public String colorfulRegex() {
+        return "\033[" + STYLES[0].code() + "m" + ANSI_CODE.matcher(styled).replaceAll("") + "\033[0m";
+    }
+
+    @Benchmark
+    public String colorful() {
+        return Printer.colorful(styled, STYLES);
+    }
+
+    @Benchmark
+    public void isNumberRegex(Blackhole bh) {
+        for (Object value : values) {
+            bh.consume(StringUtils.NUMBER_PATTERN.matcher(value.toString()).matches());
+        }
+    }
+
+    @Benchmark
+    public void isNumber(Blackhole bh) {
+        for (Object value : values) {
+            bh.consume(StringUtils.isNumber(value));
+        }
+    }
+}
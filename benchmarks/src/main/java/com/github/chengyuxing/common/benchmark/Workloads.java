@@ -0,0 +1,124 @@
+package com.github.chengyuxing.common.benchmark;
+
+import com.github.chengyuxing.common.util.ValueUtils;
+
+import java.util.*;
+
+/**
+ * Inputs shared by the benchmarks.
+ */
+public final class Workloads {
+    /**
+     * Lines of a script block, see {@link #script(int)}.
+     */
+    public static final int SCRIPT_BLOCK_LINES = 20;
+
+    private static final String SCRIPT_BLOCK = "select id, name, type from test.user_%d\n" +
+            "where 1 = 1\n" +
+            "#if :name != blank\n" +
+            "and name = :name\n" +
+            "#fi\n" +
+            "#switch :type | upper\n" +
+            "#case 'A', 'B'\n" +
+            "and type = :type\n" +
+            "#break\n" +
+            "#default\n" +
+            "and type is null\n" +
+            "#break\n" +
+            "#end\n" +
+            "#for id of :ids; last as isLast\n" +
+            "id = ${id}\n" +
+            "#if !:isLast\n" +
+            "or\n" +
+            "#fi\n" +
+            "#done\n" +
+            ";\n";
+
+    private Workloads() {
+    }
+
+    /**
+     * Dynamic sql script of the lines, which contains {@code #if}, {@code #switch} and {@code #for}.
+     *
+     * @param lines lines of the script, rounded up to the multiple of {@link #SCRIPT_BLOCK_LINES}
+     * @return script
+     */
+    public static String script(int lines) {
+        int blocks = Math.max(1, (lines + SCRIPT_BLOCK_LINES - 1) / SCRIPT_BLOCK_LINES);
+        StringBuilder sb = new StringBuilder(blocks * 300);
+        for (int i = 0; i < blocks; i++) {
+            sb.append(String.format(SCRIPT_BLOCK, i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Arguments of the {@link #script(int) script}.
+     *
+     * @param ids size of the {@code ids}
+     * @return arguments
+     */
+    public static Map<String, Object> scriptArgs(int ids) {
+        List<Integer> list = new ArrayList<>(ids);
+        for (int i = 0; i < ids; i++) {
+            list.add(i);
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put("name", "cyx");
+        args.put("type", "a");
+        args.put("ids", list);
+        return args;
+    }
+
+    /**
+     * Rows of the {@link EntityMappingBenchmark.WideEntity}, e.g. the result of a query.
+     *
+     * @param count count of the rows
+     * @return rows
+     */
+    public static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        EntityMappingBenchmark.WideEntity entity = EntityMappingBenchmark.WideEntity.sample();
+        for (int i = 0; i < count; i++) {
+            entity.setId(i);
+            entity.setName("user_" + i);
+            rows.add(ValueUtils.entityToMap(entity, HashMap::new));
+        }
+        return rows;
+    }
+
+    /**
+     * String template with the holders.
+     *
+     * @param holders count of the holders
+     * @param nested  true if half of the holders are resolved to another holder
+     * @return template
+     */
+    public static String template(int holders, boolean nested) {
+        StringBuilder sb = new StringBuilder("select ");
+        for (int i = 0; i < holders; i++) {
+            if (i > 0) {
+                sb.append(i % 2 == 0 ? " and " : ", ");
+            }
+            sb.append("${").append(nested && i % 2 == 1 ? "ref" : "f").append(i).append('}');
+        }
+        return sb.append(" from test.user where id in (${!ids}) and ${user.address.city}").toString();
+    }
+
+    /**
+     * Variables of the {@link #template(int, boolean) template}.
+     *
+     * @param holders count of the holders
+     * @return variables
+     */
+    public static Map<String, Object> templateData(int holders) {
+        Map<String, Object> data = new HashMap<>();
+        for (int i = 0; i < holders; i++) {
+            data.put("f" + i, "column_" + i);
+            data.put("ref" + i, "${f" + i + "}");
+        }
+        data.put("ids", Arrays.asList(1, 2, 3, 4, 5));
+        data.put("user", Collections.singletonMap("address", Collections.singletonMap("city", "kunming")));
+        return data;
+    }
+}
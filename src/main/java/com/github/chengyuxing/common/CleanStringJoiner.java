@@ -3,8 +3,6 @@ package com.github.chengyuxing.common;
 import com.github.chengyuxing.common.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.StringJoiner;
-
 /**
  * A StringJoiner that excludes empty and null elements.
  */
@@ -12,7 +10,7 @@ public final class CleanStringJoiner {
     private final String delimiter;
     private final String prefix;
     private final String suffix;
-    private StringJoiner joiner;
+    private final StringBuilder value = new StringBuilder();
 
     public CleanStringJoiner(@NotNull String delimiter) {
         this(delimiter, "", "");
@@ -22,30 +20,75 @@ public final class CleanStringJoiner {
         this.delimiter = delimiter;
         this.prefix = prefix;
         this.suffix = suffix;
-        this.joiner = new StringJoiner(delimiter, prefix, suffix);
     }
 
     public CleanStringJoiner add(String element) {
         if (!StringUtils.isEmpty(element)) {
-            joiner.add(element);
+            if (value.length() > 0) {
+                value.append(delimiter);
+            }
+            value.append(element);
+        }
+        return this;
+    }
+
+    /**
+     * Same as {@link #add(String)}, the chars of the element are appended without creating a string.
+     *
+     * @param element element
+     * @return this joiner
+     */
+    public CleanStringJoiner add(CharSequence element) {
+        if (element != null && !isBlank(element)) {
+            if (value.length() > 0) {
+                value.append(delimiter);
+            }
+            value.append(element);
         }
         return this;
     }
 
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0, j = s.length(); i < j; i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public int length() {
-        return joiner.length();
+        return prefix.length() + value.length() + suffix.length();
     }
 
     public boolean isEmpty() {
         return length() == 0;
     }
 
+    /**
+     * Clear the joined elements, the internal buffer is kept for reuse.
+     */
     public void clear() {
-        this.joiner = new StringJoiner(delimiter, prefix, suffix);
+        value.setLength(0);
+    }
+
+    /**
+     * Clear the joined elements and release the internal buffer if its capacity exceeds the limit.
+     *
+     * @param maxRetainedCapacity max buffer capacity to keep for reuse
+     */
+    public void clear(int maxRetainedCapacity) {
+        value.setLength(0);
+        if (value.capacity() > maxRetainedCapacity) {
+            value.trimToSize();
+        }
     }
 
     @Override
     public String toString() {
-        return joiner.toString();
+        if (prefix.isEmpty() && suffix.isEmpty()) {
+            return value.toString();
+        }
+        return prefix + value + suffix;
     }
 }
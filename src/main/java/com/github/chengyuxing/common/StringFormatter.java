@@ -1,5 +1,8 @@
 package com.github.chengyuxing.common;
 
+import com.github.chengyuxing.common.metrics.Counter;
+import com.github.chengyuxing.common.metrics.Metrics;
+import com.github.chengyuxing.common.metrics.Timer;
 import com.github.chengyuxing.common.script.ast.impl.KeyExpressionParser;
 import com.github.chengyuxing.common.util.StringUtils;
 import com.github.chengyuxing.common.util.ValueUtils;
@@ -21,6 +24,9 @@ public class StringFormatter {
     private static final char DEFAULT_HOLDER_PREFIX = '$';
     @SuppressWarnings("UnnecessaryUnicodeEscape")
     private static final char TEMP_HOLDER_PREFIX = '\u0c32';
+    private static final Timer FORMAT_TIMER = Metrics.timer("rabbit.formatter.format");
+    private static final Counter FORMAT_PASS = Metrics.counter("rabbit.formatter.pass");
+    private static final Counter HOLDER_UNRESOLVED = Metrics.counter("rabbit.formatter.holder.unresolved");
     private static final Pattern pattern = Pattern.compile("\\$\\{\\s*(?<key>!?" + KeyExpressionParser.EXPRESSION_PATTERN.pattern() + ")\\s*}");
 
     /**
@@ -66,7 +72,15 @@ public class StringFormatter {
         if (data == null || data.isEmpty()) {
             return template;
         }
-        return doFormat(template, data, valueFormatter, 0);
+        if (!Metrics.isEnabled()) {
+            return doFormat(template, data, valueFormatter, 0);
+        }
+        long start = System.nanoTime();
+        try {
+            return doFormat(template, data, valueFormatter, 0);
+        } finally {
+            FORMAT_TIMER.record(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -135,6 +149,7 @@ public class StringFormatter {
         if (depth >= WARN_DEPTH) {
             log.warn("unusual deep recursion (depth={}), check for template design issues. Template: {}", depth, template);
         }
+        FORMAT_PASS.increment();
         String copy = template;
         Matcher m = getPattern().matcher(copy);
         boolean found = false;
@@ -155,6 +170,7 @@ public class StringFormatter {
                 String value = valueFormatter.apply(ValueUtils.accessDeepValue(data, keys), isSpecial);
                 m.appendReplacement(sb, Matcher.quoteReplacement(value));
             } else {
+                HOLDER_UNRESOLVED.increment();
                 m.appendReplacement(sb, Matcher.quoteReplacement(TEMP_HOLDER_PREFIX + holder.substring(1)));
             }
         }
@@ -1,7 +1,5 @@
 package com.github.chengyuxing.common.console;
 
-import java.util.StringJoiner;
-
 /**
  * Console printer.
  */
@@ -10,11 +8,45 @@ public class Printer {
         if (styles.length == 0) {
             return str;
         }
-        StringJoiner codes = new StringJoiner(";");
-        for (AnsiStyle style : styles) {
-            codes.add(style.code());
+        StringBuilder sb = new StringBuilder(str.length() + 16).append("\033[");
+        for (int i = 0; i < styles.length; i++) {
+            if (i > 0) {
+                sb.append(';');
+            }
+            sb.append(styles[i].code());
+        }
+        sb.append('m');
+        appendWithoutAnsiCodes(sb, str);
+        return sb.append("\033[0m").toString();
+    }
+
+    /**
+     * Append the string without the ansi style codes e.g. {@code \033[1;31m}.
+     *
+     * @param sb  string builder
+     * @param str string
+     */
+    private static void appendWithoutAnsiCodes(StringBuilder sb, String str) {
+        int len = str.length();
+        int copied = 0;
+        int i = str.indexOf('\033');
+        while (i != -1) {
+            int j = i + 1;
+            if (j < len && str.charAt(j) == '[') {
+                j++;
+                while (j < len && (str.charAt(j) == ';' || (str.charAt(j) >= '0' && str.charAt(j) <= '9'))) {
+                    j++;
+                }
+                if (j > i + 2 && j < len && str.charAt(j) == 'm') {
+                    sb.append(str, copied, i);
+                    copied = j + 1;
+                    i = str.indexOf('\033', copied);
+                    continue;
+                }
+            }
+            i = str.indexOf('\033', i + 1);
         }
-        return "\033[" + codes + "m" + str.replaceAll("\033\\[[\\d;]+m", "") + "\033[0m";
+        sb.append(str, copied, len);
     }
 
     public static void print(String str, AnsiStyle... style) {
@@ -1,5 +1,6 @@
 package com.github.chengyuxing.common.io;
 
+import com.github.chengyuxing.common.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
@@ -125,6 +126,24 @@ public class ClassPathResource {
         return readBytes(getInputStream(), bufferSize);
     }
 
+    /**
+     * Computes the hash of the resource content, the content is read chunk by chunk.
+     *
+     * @param algorithm the name of the hashing algorithm (e.g., "MD5", "SHA-256")
+     * @return a string representing the hexadecimal value of the hash
+     * @throws IOException if file not exists
+     * @see StringUtils#hash(InputStream, String)
+     */
+    public String hash(String algorithm) throws IOException {
+        InputStream in = getInputStream();
+        if (in == null) {
+            throw new FileNotFoundException("Resource not found: " + getPath());
+        }
+        try (InputStream stream = in) {
+            return StringUtils.hash(stream, algorithm);
+        }
+    }
+
     /**
      * Current resource transfer to another.
      *
@@ -0,0 +1,13 @@
+package com.github.chengyuxing.common.metrics;
+
+/**
+ * Monotonic counter.
+ */
+@FunctionalInterface
+public interface Counter {
+    void add(long n);
+
+    default void increment() {
+        add(1);
+    }
+}
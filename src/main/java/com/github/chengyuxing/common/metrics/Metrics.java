@@ -0,0 +1,121 @@
+package com.github.chengyuxing.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * <h2>Library metrics</h2>
+ * <p>The metrics of the caches and the hot paths of the library, all metrics are discarded
+ * by default ({@link MetricsRegistry#NOOP}), set a registry to observe them, e.g.</p>
+ * <blockquote><pre>
+ * Slf4jMetricsRegistry registry = new Slf4jMetricsRegistry();
+ * Metrics.setRegistry(registry);
+ * // report periodically
+ * registry.report();
+ * </pre></blockquote>
+ * <p>The counters and the timers returned by this class are bound to the current registry and rebound
+ * when the registry is changed, so they can be held by the static fields.</p>
+ */
+public final class Metrics {
+    private static final Map<String, BoundCounter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, BoundTimer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private static volatile MetricsRegistry registry = MetricsRegistry.NOOP;
+    private static volatile boolean enabled = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * Set the metrics registry, the existing counters, timers and gauges are bound to the new registry.
+     *
+     * @param registry metrics registry, {@link MetricsRegistry#NOOP} to disable the metrics
+     */
+    public static synchronized void setRegistry(@NotNull MetricsRegistry registry) {
+        Metrics.registry = registry;
+        Metrics.enabled = registry != MetricsRegistry.NOOP;
+        counters.values().forEach(c -> c.bind(registry));
+        timers.values().forEach(t -> t.bind(registry));
+        gauges.forEach(registry::gauge);
+    }
+
+    public static @NotNull MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns true if the registry is not {@link MetricsRegistry#NOOP}, used to skip
+     * the measurement, e.g. reading the clock for a timer.
+     *
+     * @return true if the metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static @NotNull Counter counter(@NotNull String name) {
+        BoundCounter counter = counters.get(name);
+        if (counter == null) {
+            synchronized (Metrics.class) {
+                counter = counters.computeIfAbsent(name, k -> new BoundCounter(k, registry));
+            }
+        }
+        return counter;
+    }
+
+    public static @NotNull Timer timer(@NotNull String name) {
+        BoundTimer timer = timers.get(name);
+        if (timer == null) {
+            synchronized (Metrics.class) {
+                timer = timers.computeIfAbsent(name, k -> new BoundTimer(k, registry));
+            }
+        }
+        return timer;
+    }
+
+    public static synchronized void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value) {
+        gauges.put(name, value);
+        registry.gauge(name, value);
+    }
+
+    private static final class BoundCounter implements Counter {
+        private final String name;
+        private volatile Counter delegate;
+
+        BoundCounter(String name, MetricsRegistry registry) {
+            this.name = name;
+            bind(registry);
+        }
+
+        void bind(MetricsRegistry registry) {
+            delegate = registry.counter(name);
+        }
+
+        @Override
+        public void add(long n) {
+            delegate.add(n);
+        }
+    }
+
+    private static final class BoundTimer implements Timer {
+        private final String name;
+        private volatile Timer delegate;
+
+        BoundTimer(String name, MetricsRegistry registry) {
+            this.name = name;
+            bind(registry);
+        }
+
+        void bind(MetricsRegistry registry) {
+            delegate = registry.timer(name);
+        }
+
+        @Override
+        public void record(long nanos) {
+            delegate.record(nanos);
+        }
+    }
+}
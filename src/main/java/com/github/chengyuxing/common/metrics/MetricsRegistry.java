@@ -0,0 +1,61 @@
+package com.github.chengyuxing.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Supplier;
+
+/**
+ * Metrics service provider, e.g. adapt to the metrics system of the application.
+ * <p>The metric names are dot-separated and start with {@code rabbit.}, e.g. {@code rabbit.script.compile}.</p>
+ *
+ * @see Metrics#setRegistry(MetricsRegistry)
+ */
+public interface MetricsRegistry {
+    /**
+     * Registry which discards all metrics.
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        private final Counter counter = n -> {
+        };
+        private final Timer timer = nanos -> {
+        };
+
+        @Override
+        public @NotNull Counter counter(@NotNull String name) {
+            return counter;
+        }
+
+        @Override
+        public @NotNull Timer timer(@NotNull String name) {
+            return timer;
+        }
+
+        @Override
+        public void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value) {
+        }
+    };
+
+    /**
+     * Returns the counter of the name, the same name returns the same counter.
+     *
+     * @param name metric name
+     * @return counter
+     */
+    @NotNull Counter counter(@NotNull String name);
+
+    /**
+     * Returns the timer of the name, the same name returns the same timer.
+     *
+     * @param name metric name
+     * @return timer
+     */
+    @NotNull Timer timer(@NotNull String name);
+
+    /**
+     * Register the gauge which value is sampled when reporting.
+     *
+     * @param name  metric name
+     * @param value value supplier
+     */
+    void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value);
+}
@@ -0,0 +1,87 @@
+package com.github.chengyuxing.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Metrics registry which accumulates the metrics in memory and writes them to the log by {@link #report()}.
+ */
+public final class Slf4jMetricsRegistry implements MetricsRegistry {
+    private final Logger logger;
+    private final Map<String, LongAdderCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, StatsTimer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public Slf4jMetricsRegistry() {
+        this(LoggerFactory.getLogger(Slf4jMetricsRegistry.class));
+    }
+
+    public Slf4jMetricsRegistry(@NotNull Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public @NotNull Counter counter(@NotNull String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdderCounter());
+    }
+
+    @Override
+    public @NotNull Timer timer(@NotNull String name) {
+        return timers.computeIfAbsent(name, k -> new StatsTimer());
+    }
+
+    @Override
+    public void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Write the current values of all metrics to the log at info level, the counters
+     * and the timers are cumulative since the registry is created.
+     */
+    public void report() {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        new TreeMap<>(counters).forEach((name, counter) ->
+                logger.info("counter {}: {}", name, counter.adder.sum()));
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                logger.info("gauge {}: {}", name, gauge.get()));
+        new TreeMap<>(timers).forEach((name, timer) -> {
+            long count = timer.count.sum();
+            long total = timer.total.sum();
+            logger.info("timer {}: count={}, total={}ms, mean={}us, max={}us",
+                    name, count, total / 1_000_000, count == 0 ? 0 : total / count / 1_000, timer.max.get() / 1_000);
+        });
+    }
+
+    private static final class LongAdderCounter implements Counter {
+        final LongAdder adder = new LongAdder();
+
+        @Override
+        public void add(long n) {
+            adder.add(n);
+        }
+    }
+
+    private static final class StatsTimer implements Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.chengyuxing.common.metrics;
+
+/**
+ * Timer of the operation latency.
+ */
+@FunctionalInterface
+public interface Timer {
+    /**
+     * Record the elapsed time of an operation.
+     *
+     * @param nanos elapsed nanoseconds
+     */
+    void record(long nanos);
+}
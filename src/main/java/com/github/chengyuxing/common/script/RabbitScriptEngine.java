@@ -1,15 +1,33 @@
 package com.github.chengyuxing.common.script;
 
+import com.github.chengyuxing.common.NamedThreadLocal;
+import com.github.chengyuxing.common.metrics.Counter;
+import com.github.chengyuxing.common.metrics.Metrics;
+import com.github.chengyuxing.common.metrics.Timer;
 import com.github.chengyuxing.common.script.ast.IElement;
 import com.github.chengyuxing.common.script.ast.ScriptAst;
 import com.github.chengyuxing.common.script.ast.ScriptEngine;
 import com.github.chengyuxing.common.script.ast.impl.*;
 import com.github.chengyuxing.common.script.lang.Comparators;
+import com.github.chengyuxing.common.script.lang.Token;
+import com.github.chengyuxing.common.script.lang.TokenType;
 import com.github.chengyuxing.common.script.lexer.RabbitScriptLexer;
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
 import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.exception.EvalRuntimeException;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * <h2>Rabbit script engine.</h2>
@@ -99,10 +117,21 @@ import java.util.function.Function;
  * @see Comparators
  */
 public final class RabbitScriptEngine implements ScriptEngine {
+    // evaluator is taken out while executing, so the reentrant execution on the same thread gets a new one.
+    private static final NamedThreadLocal<RabbitScriptEvaluator> EVALUATOR = new NamedThreadLocal<>("rabbit-script-evaluator");
+    private static final Function<String, String> NO_NORMALIZER = Function.identity();
+    private static final Timer COMPILE_TIMER = Metrics.timer("rabbit.script.compile");
+    private static final Timer EXECUTE_TIMER = Metrics.timer("rabbit.script.execute");
+    private static final Counter FRAGMENT_HIT = Metrics.counter("rabbit.script.fragment.hit");
+    private static final Counter FRAGMENT_MISS = Metrics.counter("rabbit.script.fragment.miss");
+    // the ill-formed script is recompiled from scratch.
+    private static final Counter RECOMPILE_FALLBACK = Metrics.counter("rabbit.script.recompile.fallback");
+    private static final Counter EVALUATOR_ALLOCATION = Metrics.counter("rabbit.script.evaluator.allocation");
     private final Function<String, String> directiveNormalizer;
+    private final PipeRegistry pipeRegistry;
 
     public RabbitScriptEngine() {
-        this.directiveNormalizer = Function.identity();
+        this(NO_NORMALIZER);
     }
 
     /**
@@ -112,24 +141,395 @@ public final class RabbitScriptEngine implements ScriptEngine {
      */
     public RabbitScriptEngine(Function<String, String> directiveNormalizer) {
         this.directiveNormalizer = directiveNormalizer;
+        this.pipeRegistry = null;
     }
 
-    @Override
-    public ScriptAst compile(String script) {
-        RabbitScriptLexer lexer = new RabbitScriptLexer(script) {
+    /**
+     * Construct a new RabbitScriptEngine instance with the directiveNormalizer and custom pipes.
+     * <p>All pipes are linked at compile time, the script which uses a pipe that is neither
+     * built-in nor declared by the custom pipes will be rejected by {@link PipeNotFoundException}
+     * when compile, the pipes declared by {@link EvalContext} still take precedence at runtime.</p>
+     *
+     * @param directiveNormalizer the function to trim the line to directive
+     * @param pipes               custom pipes
+     */
+    public RabbitScriptEngine(Function<String, String> directiveNormalizer, Map<String, IPipe<?>> pipes) {
+        this.directiveNormalizer = directiveNormalizer;
+        this.pipeRegistry = PipeRegistry.builtin().extend(pipes);
+    }
+
+    private RabbitScriptLexer createLexer(String script) {
+        if (directiveNormalizer == NO_NORMALIZER) {
+            return new RabbitScriptLexer(script);
+        }
+        return new RabbitScriptLexer(script) {
             @Override
             protected String normalizeDirectiveLine(String line) {
                 return directiveNormalizer.apply(line);
             }
         };
-        RabbitScriptParser parser = new RabbitScriptParser(lexer.tokenize());
+    }
+
+    @Override
+    public ScriptAst compile(String script) {
+        if (!Metrics.isEnabled()) {
+            return doCompile(script);
+        }
+        long start = System.nanoTime();
+        try {
+            return doCompile(script);
+        } finally {
+            COMPILE_TIMER.record(System.nanoTime() - start);
+        }
+    }
+
+    private ScriptAst doCompile(String script) {
+        RabbitScriptParser parser = new RabbitScriptParser(createLexer(script).tokenize(), pipeRegistry);
         List<IElement> elements = parser.parse();
-        return new ScriptAst(elements);
+        return new ScriptAst(elements, Collections.emptyMap(), parser.getLines());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>The script is split into top-level fragments (a text block, a single line statement
+     * or a whole block statement e.g. {@code #if ... #fi}), only the fragment which source text
+     * is not found in the previous ast will be parsed, the others are reused, a repeated fragment
+     * is reused at its first position only, so each position has its own element and source line.</p>
+     * <p>The returned ast records its fragments for the next recompilation, the script
+     * which is not well-formed is compiled by {@link #compile(String)} to report the error.</p>
+     */
+    @Override
+    public ScriptAst recompile(@Nullable ScriptAst previous, String script) {
+        List<Token> tokens = createLexer(script).tokenize();
+        Map<String, IElement> reusable = previous != null ? previous.getFragments() : Collections.emptyMap();
+        int[] lineStarts = lineStarts(script);
+        List<IElement> elements = new ArrayList<>();
+        Map<String, IElement> fragments = new HashMap<>();
+        Map<IElement, Integer> lines = new IdentityHashMap<>();
+        int depth = 0;
+        boolean inDirective = false;
+        int fragmentStart = 0;
+        int eof = tokens.size() - 1;
+        for (int i = 0; i < eof; i++) {
+            Token token = tokens.get(i);
+            boolean fragmentEnd = false;
+            switch (token.getType()) {
+                case IF:
+                case SWITCH:
+                case CHOOSE:
+                case FOR:
+                case GUARD:
+                    depth++;
+                    inDirective = true;
+                    break;
+                case END_IF:
+                case END:
+                case END_FOR:
+                case END_GUARD:
+                    depth--;
+                    inDirective = true;
+                    break;
+                case NEWLINE:
+                    fragmentEnd = depth == 0;
+                    inDirective = false;
+                    break;
+                case PLAIN_TEXT:
+                    fragmentEnd = depth == 0 && !inDirective && tokens.get(i + 1).getType() != TokenType.PLAIN_TEXT;
+                    break;
+                default:
+                    inDirective = true;
+                    break;
+            }
+            if (depth < 0) {
+                return fallback(script);
+            }
+            if (fragmentEnd) {
+                int startLine = tokens.get(fragmentStart).getLine();
+                int endLine = token.getLine();
+                int end = endLine + 1 < lineStarts.length ? lineStarts[endLine + 1] - 1 : script.length();
+                String source = script.substring(lineStarts[startLine], end);
+                // the repeated fragment is parsed again, an element has only one position of the ast.
+                IElement element = fragments.containsKey(source) ? null : reusable.get(source);
+                if (element != null) {
+                    FRAGMENT_HIT.increment();
+                    shiftLines(element, previous, startLine + 1 - previous.getLine(element), lines);
+                } else {
+                    FRAGMENT_MISS.increment();
+                    element = parseFragment(tokens.subList(fragmentStart, i + 1), endLine + 1, lines);
+                    if (element == null) {
+                        return fallback(script);
+                    }
+                }
+                elements.add(element);
+                fragments.putIfAbsent(source, element);
+                fragmentStart = i + 1;
+            }
+        }
+        if (depth != 0 || fragmentStart != eof) {
+            return fallback(script);
+        }
+        return new ScriptAst(Collections.unmodifiableList(elements), Collections.unmodifiableMap(fragments), Collections.unmodifiableMap(lines));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see ScriptSpecializer
+     */
+    @Override
+    public ScriptAst specialize(ScriptAst ast, Map<String, Object> knownArgs) {
+        return ScriptSpecializer.specialize(ast, knownArgs);
+    }
+
+    /**
+     * Load the script ast which encoded by {@link ScriptAstCodec#encode(ScriptAst)},
+     * the pipes are linked as {@link #compile(String)} does.
+     *
+     * @param buffer buffer, e.g. a memory-mapped file
+     * @return script ast
+     */
+    public ScriptAst load(@NotNull ByteBuffer buffer) {
+        return ScriptAstCodec.decode(buffer, pipeRegistry);
+    }
+
+    /**
+     * Load the script asts which encoded by {@link ScriptAstCodec#encodeAll(Map)},
+     * the pipes are linked as {@link #compile(String)} does.
+     *
+     * @param buffer buffer, e.g. a memory-mapped file
+     * @return script asts keyed by name
+     */
+    public Map<String, ScriptAst> loadAll(@NotNull ByteBuffer buffer) {
+        return ScriptAstCodec.decodeAll(buffer, pipeRegistry);
+    }
+
+    private IElement parseFragment(List<Token> fragment, int eofLine, Map<IElement, Integer> lines) {
+        List<Token> tokens = new ArrayList<>(fragment.size() + 1);
+        tokens.addAll(fragment);
+        tokens.add(new Token(TokenType.EOF, "", eofLine, 0));
+        try {
+            RabbitScriptParser parser = new RabbitScriptParser(tokens, pipeRegistry);
+            List<IElement> elements = parser.parse();
+            if (elements.size() != 1) {
+                return null;
+            }
+            lines.putAll(parser.getLines());
+            return elements.get(0);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private ScriptAst fallback(String script) {
+        RECOMPILE_FALLBACK.increment();
+        return compile(script);
+    }
+
+    /**
+     * Copy the source lines of the reused element and its nested elements with the offset.
+     *
+     * @param element  reused element
+     * @param previous previous ast
+     * @param offset   line offset of the element in the new script
+     * @param lines    source lines of the new ast
+     */
+    private static void shiftLines(IElement element, ScriptAst previous, int offset, Map<IElement, Integer> lines) {
+        int line = previous.getLine(element);
+        if (line == -1) {
+            return;
+        }
+        lines.put(element, line + offset);
+        List<List<IElement>> blocks = new ArrayList<>();
+        if (element instanceof IfElement) {
+            blocks.add(((IfElement) element).getThenBlock());
+            blocks.add(((IfElement) element).getElseBlock());
+        } else if (element instanceof ForLoopElement) {
+            blocks.add(((ForLoopElement) element).getLoopBlock());
+        } else if (element instanceof GuardElement) {
+            blocks.add(((GuardElement) element).getThenBlock());
+        } else if (element instanceof SwitchElement) {
+            for (SwitchCaseBranchElement branch : ((SwitchElement) element).getCaseBranches()) {
+                blocks.add(branch.getThenBlock());
+            }
+            blocks.add(((SwitchElement) element).getDefaultBranch().getThenBlock());
+        } else if (element instanceof ChooseElement) {
+            for (ChooseWhenBranchElement branch : ((ChooseElement) element).getWhenBranches()) {
+                blocks.add(branch.getThenBlock());
+            }
+            blocks.add(((ChooseElement) element).getDefaultBranch().getThenBlock());
+        }
+        for (List<IElement> block : blocks) {
+            for (IElement child : block) {
+                shiftLines(child, previous, offset, lines);
+            }
+        }
+    }
+
+    private static int[] lineStarts(String script) {
+        int count = 1;
+        for (int i = script.indexOf('\n'); i != -1; i = script.indexOf('\n', i + 1)) {
+            count++;
+        }
+        int[] starts = new int[count];
+        for (int i = 1, idx = script.indexOf('\n'); idx != -1; idx = script.indexOf('\n', idx + 1)) {
+            starts[i++] = idx + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The evaluator is pooled per thread and reused between executions,
+     * the context can also be reused by {@link EvalContext#reset(java.util.Map)}.</p>
+     */
     @Override
     public EvalResult execute(ScriptAst ast, EvalContext context) {
-        RabbitScriptEvaluator evaluator = new RabbitScriptEvaluator(context);
-        return evaluator.execute(ast);
+        RabbitScriptEvaluator evaluator = EVALUATOR.get();
+        if (evaluator == null) {
+            EVALUATOR_ALLOCATION.increment();
+            evaluator = new RabbitScriptEvaluator(context);
+        } else {
+            EVALUATOR.set(null);
+            evaluator.reset(context);
+        }
+        boolean timed = Metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            return evaluator.execute(ast);
+        } finally {
+            if (timed) {
+                EXECUTE_TIMER.record(System.nanoTime() - start);
+            }
+            evaluator.release();
+            EVALUATOR.set(evaluator);
+        }
+    }
+
+    /**
+     * Execute the script against each input arguments in order, the evaluator and the context
+     * are reused between the items.
+     *
+     * @param ast      script ast
+     * @param argsList input arguments of each item, the arguments must not be modified during the execution
+     * @return lazy stream of the results in order of the input arguments
+     */
+    public Stream<EvalResult> executeBatch(@NotNull ScriptAst ast, @NotNull Iterable<? extends Map<String, Object>> argsList) {
+        return executeBatch(ast, argsList, args -> new EvalContext(args, false));
+    }
+
+    /**
+     * Execute the script against each input arguments in order, the context is created by the
+     * context factory for the first item and {@link EvalContext#reset(Map) reset} for the next items.
+     *
+     * @param ast            script ast
+     * @param argsList       input arguments of each item
+     * @param contextFactory context factory
+     * @return lazy stream of the results in order of the input arguments
+     */
+    public Stream<EvalResult> executeBatch(@NotNull ScriptAst ast,
+                                           @NotNull Iterable<? extends Map<String, Object>> argsList,
+                                           @NotNull Function<Map<String, Object>, EvalContext> contextFactory) {
+        Iterator<? extends Map<String, Object>> iterator = argsList.iterator();
+        BatchWorker worker = new BatchWorker(ast, contextFactory);
+        // the iterator based stream never invokes the iterator concurrently, so the worker is safe to reuse.
+        Iterator<EvalResult> results = new Iterator<EvalResult>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public EvalResult next() {
+                return worker.execute(iterator.next());
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Execute the script against the input arguments in parallel, the items are split into chunks and
+     * each chunk is executed on the executor with its own evaluator and context.
+     *
+     * @param ast            script ast
+     * @param argsList       input arguments of each item
+     * @param contextFactory context factory, invoked once per chunk
+     * @param executor       executor to execute the chunks
+     * @param chunkSize      number of items of each chunk
+     * @return stream of the results in order of the input arguments
+     */
+    public Stream<EvalResult> executeBatch(@NotNull ScriptAst ast,
+                                           @NotNull List<? extends Map<String, Object>> argsList,
+                                           @NotNull Function<Map<String, Object>, EvalContext> contextFactory,
+                                           @NotNull Executor executor,
+                                           int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        List<CompletableFuture<List<EvalResult>>> chunks = new ArrayList<>();
+        for (int start = 0; start < argsList.size(); start += chunkSize) {
+            List<? extends Map<String, Object>> chunk = argsList.subList(start, Math.min(argsList.size(), start + chunkSize));
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                BatchWorker worker = new BatchWorker(ast, contextFactory);
+                List<EvalResult> results = new ArrayList<>(chunk.size());
+                for (Map<String, Object> args : chunk) {
+                    results.add(worker.execute(args));
+                }
+                return results;
+            }, executor));
+        }
+        return chunks.stream().flatMap(chunk -> {
+            try {
+                return chunk.join().stream();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new EvalRuntimeException("Batch execution failed.", cause);
+            }
+        });
+    }
+
+    /**
+     * Execute the script against each input arguments and group the results by the content,
+     * the items which take the same branches produce the same content (statement shape) when the
+     * context renders the values as placeholders, see {@link EvalContext#setPlaceholderStyle(PlaceholderStyle)}.
+     *
+     * @param ast            script ast
+     * @param argsList       input arguments of each item
+     * @param contextFactory context factory
+     * @return results grouped by the content in order of the first occurrence
+     */
+    public Map<String, List<EvalResult>> executeBatchGrouped(@NotNull ScriptAst ast,
+                                                             @NotNull Iterable<? extends Map<String, Object>> argsList,
+                                                             @NotNull Function<Map<String, Object>, EvalContext> contextFactory) {
+        return executeBatch(ast, argsList, contextFactory)
+                .collect(Collectors.groupingBy(EvalResult::getContent, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private static final class BatchWorker {
+        private final ScriptAst ast;
+        private final Function<Map<String, Object>, EvalContext> contextFactory;
+        private EvalContext context;
+        private RabbitScriptEvaluator evaluator;
+
+        BatchWorker(ScriptAst ast, Function<Map<String, Object>, EvalContext> contextFactory) {
+            this.ast = ast;
+            this.contextFactory = contextFactory;
+        }
+
+        EvalResult execute(Map<String, Object> args) {
+            if (context == null) {
+                context = contextFactory.apply(args);
+                EVALUATOR_ALLOCATION.increment();
+                evaluator = new RabbitScriptEvaluator(context);
+            } else {
+                evaluator.reset(context.reset(args));
+            }
+            return evaluator.execute(ast);
+        }
     }
 }
@@ -0,0 +1,14 @@
+package com.github.chengyuxing.common.script.ast;
+
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+
+/**
+ * Script compiled into the Java class at build time, the result is the same as
+ * {@link ScriptEngine#execute(ScriptAst, EvalContext)} of the source script.
+ *
+ * @see com.github.chengyuxing.common.script.ast.impl.ScriptSourceGenerator ScriptSourceGenerator
+ */
+public interface CompiledScript {
+    EvalResult execute(EvalContext context);
+}
@@ -1,16 +1,49 @@
 package com.github.chengyuxing.common.script.ast;
 
+import com.github.chengyuxing.common.script.ast.impl.DependencyAnalyzer;
 import com.github.chengyuxing.common.script.ast.impl.TextElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ScriptAst {
     private final List<IElement> elements;
     private final boolean dynamic;
+    private final Map<String, IElement> fragments;
+    private final Map<IElement, Integer> lines;
+    private volatile Set<List<String>> dependencies;
 
     public ScriptAst(List<IElement> elements) {
+        this(elements, Collections.emptyMap());
+    }
+
+    /**
+     * Construct a new ScriptAst with the compiled top-level fragments.
+     *
+     * @param elements  elements
+     * @param fragments top-level elements keyed by the source text of the element,
+     *                  used to reuse the unchanged elements by {@link ScriptEngine#recompile(ScriptAst, String)}
+     */
+    public ScriptAst(List<IElement> elements, @NotNull Map<String, IElement> fragments) {
+        this(elements, fragments, Collections.emptyMap());
+    }
+
+    /**
+     * Construct a new ScriptAst with the compiled top-level fragments and the source lines.
+     *
+     * @param elements  elements
+     * @param fragments top-level elements keyed by the source text of the element
+     * @param lines     source line keyed by the element (identity)
+     */
+    public ScriptAst(List<IElement> elements, @NotNull Map<String, IElement> fragments, @NotNull Map<IElement, Integer> lines) {
         this.elements = elements;
         this.dynamic = !(elements.isEmpty() || (elements.size() == 1 && elements.get(0) instanceof TextElement));
+        this.fragments = fragments;
+        this.lines = lines;
     }
 
     public List<IElement> getElements() {
@@ -20,4 +53,38 @@ public class ScriptAst {
     public boolean isDynamic() {
         return dynamic;
     }
+
+    public @Unmodifiable Map<String, IElement> getFragments() {
+        return fragments;
+    }
+
+    public @Unmodifiable Map<IElement, Integer> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the source line of the element.
+     *
+     * @param element element of this ast
+     * @return line number (starts from 1) or -1 if unknown, e.g. the element created by the specializer
+     */
+    public int getLine(IElement element) {
+        Integer line = lines.get(element);
+        return line != null ? line : -1;
+    }
+
+    /**
+     * Returns the input key paths which the script depends on, analyzed at the first access.
+     *
+     * @return input key paths
+     * @see DependencyAnalyzer
+     */
+    public @Unmodifiable Set<List<String>> getDependencies() {
+        Set<List<String>> deps = dependencies;
+        if (deps == null) {
+            deps = DependencyAnalyzer.analyze(elements);
+            dependencies = deps;
+        }
+        return deps;
+    }
 }
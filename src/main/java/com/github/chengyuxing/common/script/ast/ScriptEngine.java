@@ -2,12 +2,36 @@ package com.github.chengyuxing.common.script.ast;
 
 import com.github.chengyuxing.common.script.ast.impl.EvalContext;
 import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 
 public interface ScriptEngine {
     ScriptAst compile(String script);
 
+    /**
+     * Compile the modified script, the implementation may reuse the unchanged parts of the previous ast.
+     *
+     * @param previous the ast of the previous version compiled by this engine or null
+     * @param script   script
+     * @return ast
+     */
+    default ScriptAst recompile(@Nullable ScriptAst previous, String script) {
+        return compile(script);
+    }
+
+    /**
+     * Specialize the script against the known arguments, returns a residual script which
+     * only depends on the rest arguments.
+     *
+     * @param ast       script ast
+     * @param knownArgs the arguments which are fixed e.g. dialect, feature switches
+     * @return residual script ast, the implementation may return the ast unchanged
+     */
+    default ScriptAst specialize(ScriptAst ast, Map<String, Object> knownArgs) {
+        return ast;
+    }
+
     EvalResult execute(ScriptAst ast, EvalContext context);
 
     default EvalResult run(String script, EvalContext context) {
@@ -11,6 +11,11 @@ public class ConstExpr extends ValueExpr {
         return value;
     }
 
+    @Override
+    void onPipesLinked() {
+        foldPipes(value);
+    }
+
     @Override
     public Object eval(EvalContext context) {
         return getPipedValue(value, context);
@@ -0,0 +1,172 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.IElement;
+import com.github.chengyuxing.common.script.ast.IElementVisitor;
+import com.github.chengyuxing.common.script.ast.IExpr;
+import com.github.chengyuxing.common.script.lang.ForContextProperty;
+import com.github.chengyuxing.common.tuple.Pair;
+import com.github.chengyuxing.common.util.StringUtils;
+import com.github.chengyuxing.common.util.ValueUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * Static analysis of the input arguments which the script depends on.
+ * <p>The dependencies are the key paths (e.g. {@code [user, name]}) read by the variable expressions and
+ * the plain text holders {@code ${key}}, the key path which starts with a scope variable ({@code #var},
+ * {@code #for}) is not an input dependency, the scope variable names are also the dependencies, because
+ * the variable which conflicts with an input argument is rejected at runtime.</p>
+ */
+public final class DependencyAnalyzer implements IElementVisitor<Void> {
+    private final Set<List<String>> dependencies = new LinkedHashSet<>();
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+
+    private DependencyAnalyzer() {
+        scopes.push(new HashSet<>());
+    }
+
+    /**
+     * Collect the input key paths which the elements depend on.
+     *
+     * @param elements elements
+     * @return key paths in order of the first occurrence
+     */
+    public static @NotNull @Unmodifiable Set<List<String>> analyze(@NotNull List<IElement> elements) {
+        DependencyAnalyzer analyzer = new DependencyAnalyzer();
+        analyzer.visitElements(elements);
+        return Collections.unmodifiableSet(analyzer.dependencies);
+    }
+
+    private void visitElements(List<IElement> elements) {
+        for (IElement element : elements) {
+            element.accept(this);
+        }
+    }
+
+    private void visitBlock(List<IElement> elements) {
+        scopes.push(new HashSet<>(scopes.peek()));
+        visitElements(elements);
+        scopes.pop();
+    }
+
+    private void defineVar(String name) {
+        dependencies.add(Collections.singletonList(name));
+        scopes.peek().add(name);
+    }
+
+    private void addKeys(List<String> keys) {
+        if (!scopes.peek().contains(keys.get(0))) {
+            dependencies.add(keys);
+        }
+    }
+
+    private void visitExpr(IExpr<?> expr) {
+        if (expr instanceof LogicExpr) {
+            visitExpr(((LogicExpr) expr).getLeft());
+            visitExpr(((LogicExpr) expr).getRight());
+        } else if (expr instanceof NotExpr) {
+            visitExpr(((NotExpr) expr).getExpr());
+        } else if (expr instanceof UnaryExpr) {
+            visitExpr(((UnaryExpr) expr).getLeft());
+        } else if (expr instanceof BinaryExpr) {
+            visitExpr(((BinaryExpr) expr).getLeft());
+            visitExpr(((BinaryExpr) expr).getRight());
+        } else if (expr instanceof ValueExpr) {
+            if (expr instanceof VarExpr) {
+                addKeys(((VarExpr) expr).getKeys());
+            }
+            for (Pair<String, List<ValueExpr>> pipe : ((ValueExpr) expr).getPipes()) {
+                for (ValueExpr param : pipe.getItem2()) {
+                    visitExpr(param);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Void visitIf(IfElement element) {
+        visitExpr(element.getExpr());
+        visitBlock(element.getThenBlock());
+        visitBlock(element.getElseBlock());
+        return null;
+    }
+
+    @Override
+    public Void visitForLoop(ForLoopElement element) {
+        visitExpr(element.getValueExpr());
+        scopes.push(new HashSet<>(scopes.peek()));
+        defineVar(element.getItemName());
+        for (ForContextProperty property : ForContextProperty.values()) {
+            String alias = element.getContextPropertyAlias(property);
+            if (alias != null) {
+                defineVar(alias);
+            }
+        }
+        visitElements(element.getLoopBlock());
+        scopes.pop();
+        return null;
+    }
+
+    @Override
+    public Void visitVarDefine(VarDefineElement element) {
+        visitExpr(element.getValueExpr());
+        defineVar(element.getName());
+        return null;
+    }
+
+    @Override
+    public Void visitCheck(CheckElement element) {
+        visitExpr(element.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitGuard(GuardElement element) {
+        visitExpr(element.getExpr());
+        visitBlock(element.getThenBlock());
+        return null;
+    }
+
+    @Override
+    public Void visitSwitch(SwitchElement element) {
+        visitExpr(element.getValueExpr());
+        for (SwitchCaseBranchElement caseBranch : element.getCaseBranches()) {
+            for (ValueExpr expr : caseBranch.getValueExpr()) {
+                visitExpr(expr);
+            }
+            visitBlock(caseBranch.getThenBlock());
+        }
+        visitBlock(element.getDefaultBranch().getThenBlock());
+        return null;
+    }
+
+    @Override
+    public Void visitChoose(ChooseElement element) {
+        for (ChooseWhenBranchElement when : element.getWhenBranches()) {
+            visitExpr(when.getExpr());
+            visitBlock(when.getThenBlock());
+        }
+        visitBlock(element.getDefaultBranch().getThenBlock());
+        return null;
+    }
+
+    @Override
+    public Void visitPlainText(TextElement element) {
+        String text = element.getText();
+        if (!text.contains("${")) {
+            return null;
+        }
+        Matcher m = StringUtils.FMT.getPattern().matcher(text);
+        while (m.find()) {
+            String key = m.group("key");
+            if (key.charAt(0) == '!') {
+                key = key.substring(1);
+            }
+            addKeys(ValueUtils.decodeKeyPathExpression(key));
+        }
+        return null;
+    }
+}
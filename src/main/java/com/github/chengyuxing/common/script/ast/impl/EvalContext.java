@@ -2,26 +2,285 @@ package com.github.chengyuxing.common.script.ast.impl;
 
 import com.github.chengyuxing.common.script.exception.EvalRuntimeException;
 import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
 import com.github.chengyuxing.common.tuple.Pair;
 import com.github.chengyuxing.common.util.StringUtils;
 import com.github.chengyuxing.common.util.ValueUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
 
+/**
+ * Script evaluation context.
+ * <p>The context is reusable, invoke {@link #reset(Map)} to bind new input arguments
+ * before the next execution, the scope variables of the previous execution will be discarded
+ * and the internal scope maps will be reused.</p>
+ */
 public class EvalContext {
-    private final Map<String, Object> inputArgs;
-    private final ArrayDeque<Map<String, VarMeta>> scopedVars = new ArrayDeque<>();
+    // the last registry extended by each context type, reused while the type declares the same pipes.
+    private static final ClassValue<AtomicReference<PipeRegistry>> EXTENDED_REGISTRIES = new ClassValue<AtomicReference<PipeRegistry>>() {
+        @Override
+        protected AtomicReference<PipeRegistry> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+    private static final ClassValue<Boolean> FORMAT_OVERRIDDEN = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != EvalContext.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("formatScopePlainText", String.class, Map.class, Map.class);
+                    return true;
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+            return false;
+        }
+    };
+    private final boolean copyArgs;
+    private Map<String, Object> inputArgs;
+    private Map<String, Object> inputArgsView;
+    // variables of the active scopes, a variable cannot be redefined in the nested scopes,
+    // so each scope removes the names it defined at the end: scopeNames[0 .. depth - 1] are active.
+    private final Map<String, VarMeta> scope = new HashMap<>();
+    private final Map<String, VarMeta> scopeView = Collections.unmodifiableMap(scope);
+    private final List<List<String>> scopeNames = new ArrayList<>();
+    private int depth;
+    private PipeRegistry pipeRegistry;
+    private Executor parallelLoopExecutor;
+    private int parallelLoopThreshold;
+    private PlaceholderStyle placeholderStyle = PlaceholderStyle.INLINE;
+    private Map<PipeMemoKey, Object> pipeMemo;
+    private Duration timeout;
+    private long maxLoopIterations;
+    private long maxOutputLength;
+    // set by the profiling evaluator during the execution.
+    private ScriptProfile profile;
+    // resolved deep paths of the input arguments, the input arguments are immutable within an execution.
+    private Map<List<String>, Object> inputValues;
+    private StringBuilder textBuffer;
 
+    /**
+     * Construct a new EvalContext with a copy of the input arguments.
+     *
+     * @param args input arguments
+     */
     public EvalContext(@NotNull Map<String, Object> args) {
-        this.inputArgs = new HashMap<>(args);
-        this.scopedVars.push(new HashMap<>());
+        this(args, true);
+    }
+
+    /**
+     * Construct a new EvalContext.
+     *
+     * @param args     input arguments
+     * @param copyArgs true: copy the input arguments, false: wrap the input arguments directly,
+     *                 the arguments must not be modified during the execution,
+     *                 {@link LazyArgs} is never copied
+     */
+    public EvalContext(@NotNull Map<String, Object> args, boolean copyArgs) {
+        this.copyArgs = copyArgs;
+        bindArgs(args);
+        pushScope();
+    }
+
+    /**
+     * Reset the context with new input arguments to reuse it for the next execution.
+     *
+     * @param args input arguments
+     * @return this context
+     */
+    public EvalContext reset(@NotNull Map<String, Object> args) {
+        bindArgs(args);
+        pipeRegistry = null;
+        if (pipeMemo != null) {
+            pipeMemo.clear();
+        }
+        clearInputValues();
+        while (depth > 0) {
+            popScope();
+        }
+        pushScope();
+        return this;
+    }
+
+    private void bindArgs(Map<String, Object> args) {
+        if (copyArgs && !(args instanceof LazyArgs)) {
+            if (inputArgs == null || inputArgs instanceof LazyArgs) {
+                inputArgs = new HashMap<>(args);
+            } else {
+                inputArgs.clear();
+                inputArgs.putAll(args);
+            }
+        } else {
+            inputArgs = args;
+        }
+        inputArgsView = Collections.unmodifiableMap(inputArgs);
+    }
+
+    /**
+     * Enable the parallel rendering of the {@code #for} loop, the items are split into chunks
+     * and each chunk is rendered on the executor into its own buffer, the chunks are merged in order.
+     * <p>Only the loop which each iteration defines a fixed number of variables (no nested loop, every
+     * branch of the body defines the same number of {@code #var}) is rendered in parallel, so the variable
+     * sequence is the same as the sequential rendering, the nested loop of the parallel loop body is always
+     * rendered sequentially.</p>
+     * <p>The custom pipes and {@link #formatScopePlainText(String, Map, Map)} must be thread-safe.</p>
+     *
+     * @param executor  executor to render the chunks, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}, null to disable
+     * @param threshold the minimum number of items to render in parallel
+     */
+    public void setParallelLoop(@Nullable Executor executor, int threshold) {
+        this.parallelLoopExecutor = executor;
+        this.parallelLoopThreshold = threshold;
+    }
+
+    public @Nullable Executor getParallelLoopExecutor() {
+        return parallelLoopExecutor;
+    }
+
+    public int getParallelLoopThreshold() {
+        return parallelLoopThreshold;
+    }
+
+    /**
+     * Set the wall-clock time limit of each execution, the evaluation is aborted with
+     * {@link com.github.chengyuxing.common.script.exception.BudgetExceededException BudgetExceededException}
+     * when the time is up, the clock is checked periodically by the loop iterations and the text outputs.
+     *
+     * @param timeout time limit, null means unlimited
+     */
+    public void setTimeout(@Nullable Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public @Nullable Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set the maximum total iterations of all {@code #for} loops of each execution.
+     *
+     * @param maxLoopIterations maximum iterations, 0 or less means unlimited
+     */
+    public void setMaxLoopIterations(long maxLoopIterations) {
+        this.maxLoopIterations = maxLoopIterations;
+    }
+
+    public long getMaxLoopIterations() {
+        return maxLoopIterations;
+    }
+
+    /**
+     * Set the maximum length of the rendered content of each execution.
+     *
+     * @param maxOutputLength maximum length, 0 or less means unlimited
+     */
+    public void setMaxOutputLength(long maxOutputLength) {
+        this.maxOutputLength = maxOutputLength;
+    }
+
+    public long getMaxOutputLength() {
+        return maxOutputLength;
+    }
+
+    ScriptProfile getProfile() {
+        return profile;
+    }
+
+    void setProfile(ScriptProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Start the budgets of a new execution.
+     *
+     * @return execution budget or null if no budget is set
+     */
+    ExecutionBudget startBudget() {
+        if (timeout == null && maxLoopIterations <= 0 && maxOutputLength <= 0) {
+            return null;
+        }
+        return new ExecutionBudget(timeout, maxLoopIterations, maxOutputLength);
+    }
+
+    /**
+     * Set the output style of the quoted value holder {@code ${!key}} of the plain text,
+     * the placeholders are bound before {@link #formatScopePlainText(String, Map, Map)},
+     * so the same branches of the script always produce the same content.
+     *
+     * @param placeholderStyle placeholder style, default {@link PlaceholderStyle#INLINE}
+     */
+    public void setPlaceholderStyle(@NotNull PlaceholderStyle placeholderStyle) {
+        this.placeholderStyle = placeholderStyle;
     }
 
+    public @NotNull PlaceholderStyle getPlaceholderStyle() {
+        return placeholderStyle;
+    }
+
+    /**
+     * Returns the custom pipes of the context, invoked once per execution,
+     * return the same pipe instances (e.g. a constant map) to reuse the pipe registry
+     * across the executions and the contexts of the same type.
+     *
+     * @return custom pipes
+     */
     protected @NotNull Map<String, IPipe<?>> getPipes() {
         return Collections.emptyMap();
     }
 
+    /**
+     * Returns the pipe registry which built from {@link #getPipes()} at the first access of each execution.
+     *
+     * @return pipe registry
+     */
+    PipeRegistry getPipeRegistry() {
+        if (pipeRegistry == null) {
+            pipeRegistry = extendRegistry(getPipes());
+        }
+        return pipeRegistry;
+    }
+
+    private PipeRegistry extendRegistry(Map<String, IPipe<?>> pipes) {
+        if (pipes.isEmpty()) {
+            return PipeRegistry.builtin();
+        }
+        AtomicReference<PipeRegistry> last = EXTENDED_REGISTRIES.get(getClass());
+        PipeRegistry registry = last.get();
+        if (registry != null && registry.getDeclaredPipes().equals(pipes)) {
+            return registry;
+        }
+        registry = PipeRegistry.builtin().extend(pipes);
+        last.set(registry);
+        return registry;
+    }
+
+    /**
+     * Returns the memoized result of the deterministic pipe within the current execution.
+     *
+     * @param pipe   pipe
+     * @param value  value
+     * @param params params
+     * @return result
+     */
+    Object memoizePipe(IPipe<?> pipe, Object value, Object[] params) {
+        if (pipeMemo == null) {
+            pipeMemo = new HashMap<>();
+        }
+        PipeMemoKey key = new PipeMemoKey(pipe, value, params);
+        Object result = pipeMemo.get(key);
+        if (result == null && !pipeMemo.containsKey(key)) {
+            result = pipe.transform(value, params);
+            pipeMemo.put(key, result);
+        }
+        return result;
+    }
+
     /**
      * Format the current scope plain text.
      * <p>
@@ -33,65 +292,301 @@ public class EvalContext {
      * @return the formatted text and the scope arguments which used in the formatting
      */
     protected Pair<String, Map<String, Object>> formatScopePlainText(String text, Map<String, Object> inputs, Map<String, VarMeta> scope) {
-        Map<String, Object> scopeVars = new HashMap<>(scope.size());
-        for (Map.Entry<String, VarMeta> entry : scope.entrySet()) {
-            scopeVars.put(entry.getKey(), entry.getValue().getValue());
+        if (text != null && !text.contains("${")) {
+            return Pair.of(text, Collections.emptyMap());
+        }
+        if (!scope.isEmpty()) {
+            Map<String, Object> scopeVars = new HashMap<>(scope.size());
+            for (Map.Entry<String, VarMeta> entry : scope.entrySet()) {
+                scopeVars.put(entry.getKey(), entry.getValue().getValue());
+            }
+            text = StringUtils.FMT.format(text, scopeVars);
         }
-        text = StringUtils.FMT.format(text, scopeVars);
         text = StringUtils.FMT.format(text, inputs);
         return Pair.of(text, Collections.emptyMap());
     }
 
-    Pair<String, Map<String, Object>> formatScopePlainText(String text) {
-        Map<String, VarMeta> scope = scopedVars.peek();
-        if (scope == null) {
-            scope = Collections.emptyMap();
+    /**
+     * Format the plain text of the current scope, the value holders decoded at compile time are rendered
+     * in a single pass if the placeholder style is {@link PlaceholderStyle#INLINE INLINE} and the context
+     * does not override {@link #formatScopePlainText(String, Map, Map)}.
+     *
+     * @param element  text element
+     * @param params   ordered parameter values
+     * @param usedVars used variables of the execution
+     * @return formatted text, which is valid until the next invocation
+     */
+    CharSequence formatPlainText(TextElement element, List<Object> params, Map<String, Object> usedVars) {
+        TextTemplate template = element.getTemplate();
+        if (placeholderStyle == PlaceholderStyle.INLINE && !isFormatOverridden()) {
+            if (template == null) {
+                return element.getText();
+            }
+            if (textBuffer == null) {
+                textBuffer = new StringBuilder();
+            }
+            if (template.render(this, scope, inputArgs, textBuffer)) {
+                return textBuffer;
+            }
         }
-        return formatScopePlainText(text,
-                Collections.unmodifiableMap(inputArgs),
-                Collections.unmodifiableMap(scope));
+        Pair<String, Map<String, Object>> result = formatScopePlainText(element.getText(), params);
+        collectUsedVars(usedVars, result.getItem2());
+        return result.getItem1();
     }
 
-    void pushScope() {
-        if (scopedVars.isEmpty()) {
-            scopedVars.push(new HashMap<>());
+    /**
+     * Returns true if the context type overrides {@link #formatScopePlainText(String, Map, Map)}.
+     *
+     * @return true if the text formatting is customized
+     */
+    boolean isFormatOverridden() {
+        return FORMAT_OVERRIDDEN.get(getClass());
+    }
+
+    Pair<String, Map<String, Object>> formatScopePlainText(String text, List<Object> params) {
+        if (placeholderStyle == PlaceholderStyle.INLINE || !text.contains("${")) {
+            return formatScopePlainText(text, inputArgsView, scopeView);
+        }
+        Map<String, Object> namedParams = placeholderStyle == PlaceholderStyle.NAMED ? new HashMap<>() : Collections.emptyMap();
+        text = bindPlaceholders(text, scopeView, params, namedParams);
+        Pair<String, Map<String, Object>> result = formatScopePlainText(text, inputArgsView, scopeView);
+        if (namedParams.isEmpty()) {
+            return result;
+        }
+        namedParams.putAll(result.getItem2());
+        return Pair.of(result.getItem1(), namedParams);
+    }
+
+    /**
+     * Replace the quoted value holders {@code ${!key}} with the placeholders and collect the values.
+     *
+     * @param text        text
+     * @param scope       current scope
+     * @param params      ordered parameter values
+     * @param namedParams named parameter values
+     * @return text with placeholders
+     */
+    private String bindPlaceholders(String text, Map<String, VarMeta> scope, List<Object> params, Map<String, Object> namedParams) {
+        Matcher m = StringUtils.FMT.getPattern().matcher(text);
+        StringBuilder sb = null;
+        int last = 0;
+        while (m.find()) {
+            String key = m.group("key");
+            if (key.charAt(0) != '!') {
+                continue;
+            }
+            List<String> keys = ValueUtils.decodeKeyPathExpression(key.substring(1));
+            String name = keys.get(0);
+            VarMeta var = scope.get(name);
+            if (var == null && !inputArgs.containsKey(name)) {
+                continue;
+            }
+            Object value = resolveArg(keys);
+            if (sb == null) {
+                sb = new StringBuilder(text.length());
+            }
+            sb.append(text, last, m.start());
+            last = m.end();
+            if (placeholderStyle == PlaceholderStyle.NAMED) {
+                String paramName = String.join("_", keys);
+                if (var != null) {
+                    paramName += "_" + var.getId();
+                }
+                // the driver may resolve the name from the input arguments too.
+                if ((var != null || keys.size() > 1) && hasInputArg(paramName)) {
+                    checkNamedParam(paramName, inputArgs.get(paramName), value);
+                }
+                sb.append(':').append(paramName);
+                bindNamedParam(namedParams, paramName, value);
+                params.add(value);
+                continue;
+            }
+            if (value == null) {
+                sb.append('?');
+                params.add(null);
+                continue;
+            }
+            // same as the inline style, each element of the collection is a value.
+            String delimiter = "";
+            for (Object v : ValueUtils.asIterable(value)) {
+                sb.append(delimiter).append('?');
+                params.add(v);
+                delimiter = ", ";
+            }
+        }
+        if (sb == null) {
+            return text;
+        }
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    /**
+     * Collect the variables of the rendered text into the used variables of the execution,
+     * the named parameter is bound to one value within an execution.
+     *
+     * @param usedVars used variables of the execution
+     * @param vars     variables of the rendered text
+     * @see PlaceholderStyle#NAMED
+     */
+    void collectUsedVars(Map<String, Object> usedVars, Map<String, Object> vars) {
+        if (placeholderStyle != PlaceholderStyle.NAMED) {
+            usedVars.putAll(vars);
             return;
         }
-        Map<String, VarMeta> current = new HashMap<>(scopedVars.peek());
-        scopedVars.push(current);
+        for (Map.Entry<String, Object> entry : vars.entrySet()) {
+            bindNamedParam(usedVars, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void bindNamedParam(Map<String, Object> namedParams, String name, Object value) {
+        if (namedParams.containsKey(name)) {
+            checkNamedParam(name, namedParams.get(name), value);
+            return;
+        }
+        namedParams.put(name, value);
+    }
+
+    private static void checkNamedParam(String name, Object bound, Object value) {
+        if (!Objects.equals(bound, value)) {
+            throw new EvalRuntimeException("Named parameter ':" + name + "' is bound to different values, " +
+                    "rename the variable or the input argument which is named the same.");
+        }
+    }
+
+    /**
+     * Fork a context which shares the input arguments and starts with the current scope variables,
+     * the forked context delegates the pipes and the text formatting to this context.
+     *
+     * @return forked context
+     */
+    EvalContext fork() {
+        return new ForkedEvalContext(this);
+    }
+
+    /**
+     * Returns the value of the input arguments by the key path,
+     * the deep path is resolved once and memoized within the current execution.
+     *
+     * @param keys key path e.g. {@code [user, addresses, 0]}
+     * @return value or null
+     */
+    public Object getInputValue(@NotNull List<String> keys) {
+        if (keys.size() < 2) {
+            return ValueUtils.accessDeepValue(inputArgs, keys);
+        }
+        if (inputValues == null) {
+            inputValues = new HashMap<>();
+        }
+        Object value = inputValues.get(keys);
+        if (value == null && !inputValues.containsKey(keys)) {
+            value = ValueUtils.accessDeepValue(inputArgs, keys);
+            inputValues.put(keys, value);
+        }
+        return value;
+    }
+
+    /**
+     * Discard the memoized input values at the end of the execution,
+     * the input arguments may be modified between the executions.
+     */
+    void clearInputValues() {
+        if (inputValues != null) {
+            inputValues.clear();
+        }
+    }
+
+    Map<String, Object> getInputArgs() {
+        return inputArgs;
+    }
+
+    Map<String, VarMeta> getCurrentScope() {
+        return scopeView;
+    }
+
+    void initScope(Map<String, VarMeta> vars) {
+        scope.putAll(vars);
+        scopeNames.get(0).addAll(vars.keySet());
+    }
+
+    void pushScope() {
+        if (depth == scopeNames.size()) {
+            scopeNames.add(new ArrayList<>());
+        }
+        depth++;
     }
 
     void popScope() {
-        scopedVars.pop();
+        if (depth == 0) {
+            throw new EvalRuntimeException("No active scope.");
+        }
+        List<String> names = scopeNames.get(--depth);
+        for (int i = 0, j = names.size(); i < j; i++) {
+            scope.remove(names.get(i));
+        }
+        names.clear();
     }
 
     void bindScope(String name, VarMeta value) {
-        Map<String, VarMeta> scope = scopedVars.peek();
-        if (scope == null) {
+        if (depth == 0) {
             throw new EvalRuntimeException("No active scope.");
         }
         if (scope.containsKey(name)) {
             throw new EvalRuntimeException("Variable '" + name + "' is already defined in the current scope.");
         }
-        if (inputArgs.containsKey(name)) {
+        if (hasInputArg(name)) {
             throw new EvalRuntimeException("Variable '" + name + "' conflicts with input arguments.");
         }
         scope.put(name, value);
+        scopeNames.get(depth - 1).add(name);
+    }
+
+    /**
+     * Check the name conflicts with the input arguments, the value of the lazy arguments is not resolved.
+     *
+     * @param name name
+     * @return true if the input arguments contain the name
+     */
+    private boolean hasInputArg(String name) {
+        if (inputArgs instanceof LazyArgs) {
+            return ((LazyArgs) inputArgs).hasKey(name);
+        }
+        return inputArgs.containsKey(name);
     }
 
     Object resolveArg(List<String> keys) {
-        Map<String, VarMeta> scope = scopedVars.peek();
-        if (scope != null) {
-            String firstKey = keys.get(0);
-            if (scope.containsKey(firstKey)) {
-                if (keys.size() == 1) {
-                    return scope.get(firstKey).getValue();
-                }
-                Map<String, Object> single = new HashMap<>(1);
-                single.put(firstKey, scope.get(firstKey).getValue());
-                return ValueUtils.accessDeepValue(single, keys);
+        VarMeta var = scope.get(keys.get(0));
+        if (var != null) {
+            if (keys.size() == 1) {
+                return var.getValue();
             }
+            return ValueUtils.accessDeepValue(var.getValue(), keys.subList(1, keys.size()));
+        }
+        return getInputValue(keys);
+    }
+
+    private static final class PipeMemoKey {
+        private final IPipe<?> pipe;
+        private final Object value;
+        private final Object[] params;
+        private final int hash;
+
+        PipeMemoKey(IPipe<?> pipe, Object value, Object[] params) {
+            this.pipe = pipe;
+            this.value = value;
+            this.params = params;
+            this.hash = 31 * (31 * System.identityHashCode(pipe) + Objects.hashCode(value)) + Arrays.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PipeMemoKey)) return false;
+            PipeMemoKey that = (PipeMemoKey) o;
+            return pipe == that.pipe && Objects.equals(value, that.value) && Arrays.equals(params, that.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
-        return ValueUtils.accessDeepValue(inputArgs, keys);
     }
 }
@@ -4,15 +4,22 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class EvalResult {
     private final String content;
     private final Map<String, Object> usedVars;
+    private final List<Object> params;
 
     public EvalResult(String content, Map<String, Object> usedVars) {
+        this(content, usedVars, Collections.emptyList());
+    }
+
+    public EvalResult(String content, Map<String, Object> usedVars, List<Object> params) {
         this.content = content;
         this.usedVars = Collections.unmodifiableMap(usedVars);
+        this.params = Collections.unmodifiableList(params);
     }
 
     public @NotNull String getContent() {
@@ -22,4 +29,14 @@ public class EvalResult {
     public @NotNull @Unmodifiable Map<String, Object> getUsedVars() {
         return usedVars;
     }
+
+    /**
+     * Returns the parameter values in order of the placeholders of the content.
+     *
+     * @return parameter values or empty if the placeholder style is {@link PlaceholderStyle#INLINE}
+     * @see EvalContext#setPlaceholderStyle(PlaceholderStyle)
+     */
+    public @NotNull @Unmodifiable List<Object> getParams() {
+        return params;
+    }
 }
@@ -0,0 +1,189 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.ScriptEngine;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+
+/**
+ * Opt-in cache of the evaluation results, the result is keyed by the script and a projection
+ * of the input arguments which the script {@link ScriptAst#getDependencies() depends on} and the custom pipes
+ * of the context, so the executions with the same relevant arguments return the cached result without evaluating.
+ * <p>The result is not cached if:</p>
+ * <ul>
+ *     <li>the context overrides {@link EvalContext#formatScopePlainText(String, Map, Map)},
+ *     which may read any argument;</li>
+ *     <li>a projected value is not a plain value (string, immutable number, boolean, enum, date time, etc.)
+ *     or a collection, array or map of them, the mutable object (e.g. {@code AtomicLong}) may be changed
+ *     after it is cached;</li>
+ *     <li>a projected string contains the holder prefix <code>${</code>, which is formatted recursively.</li>
+ * </ul>
+ * <p>The pipes must be pure, the result of the script which throws an exception is not cached.</p>
+ */
+public final class EvalResultCache {
+    private static final Object ABSENT = new Object();
+    private static final Object UNCACHEABLE = new Object();
+    private final Map<Key, EvalResult> cache;
+
+    /**
+     * Construct a new EvalResultCache.
+     *
+     * @param maxSize the maximum number of the cached results, the least recently used result will be evicted
+     */
+    public EvalResultCache(int maxSize) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<Key, EvalResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, EvalResult> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Execute the script by the engine or return the cached result.
+     *
+     * @param engine  script engine
+     * @param ast     script ast
+     * @param context evaluation context
+     * @return evaluation result
+     */
+    public EvalResult execute(@NotNull ScriptEngine engine, @NotNull ScriptAst ast, @NotNull EvalContext context) {
+        Key key = createKey(ast, context);
+        if (key == null) {
+            return engine.execute(ast, context);
+        }
+        EvalResult result = cache.get(key);
+        if (result == null) {
+            result = engine.execute(ast, context);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static Key createKey(ScriptAst ast, EvalContext context) {
+        if (context.isFormatOverridden()) {
+            return null;
+        }
+        Set<List<String>> dependencies = ast.getDependencies();
+        Object[] values = new Object[dependencies.size()];
+        int i = 0;
+        for (List<String> keys : dependencies) {
+            Object value = context.getInputArgs().containsKey(keys.get(0)) ? snapshot(context.getInputValue(keys)) : ABSENT;
+            if (value == UNCACHEABLE) {
+                return null;
+            }
+            values[i++] = value;
+        }
+        return new Key(ast, context.getClass(), context.getPipeRegistry().getDeclaredPipes(), context.getPlaceholderStyle(), values);
+    }
+
+    private static Object snapshot(Object value) {
+        if (value == null || isImmutableNumber(value) || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum || value instanceof TemporalAccessor || value instanceof UUID) {
+            return value;
+        }
+        if (value instanceof String) {
+            return ((String) value).contains("${") ? UNCACHEABLE : value;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Object v = snapshot(entry.getValue());
+                if (v == UNCACHEABLE) {
+                    return UNCACHEABLE;
+                }
+                copy.put(entry.getKey(), v);
+            }
+            return copy;
+        }
+        if (value instanceof Set) {
+            Set<Object> copy = new HashSet<>();
+            for (Object item : (Set<?>) value) {
+                Object v = snapshot(item);
+                if (v == UNCACHEABLE) {
+                    return UNCACHEABLE;
+                }
+                copy.add(v);
+            }
+            return copy;
+        }
+        if (value instanceof Collection || value.getClass().isArray()) {
+            List<Object> copy = new ArrayList<>();
+            Iterable<?> items = value instanceof Collection ? (Collection<?>) value : arrayItems(value);
+            for (Object item : items) {
+                Object v = snapshot(item);
+                if (v == UNCACHEABLE) {
+                    return UNCACHEABLE;
+                }
+                copy.add(v);
+            }
+            return copy;
+        }
+        return UNCACHEABLE;
+    }
+
+    private static boolean isImmutableNumber(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte
+                // the subclass of BigInteger and BigDecimal may be mutable.
+                || value.getClass() == BigInteger.class || value.getClass() == BigDecimal.class;
+    }
+
+    private static List<Object> arrayItems(Object array) {
+        int length = Array.getLength(array);
+        List<Object> items = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            items.add(Array.get(array, i));
+        }
+        return items;
+    }
+
+    private static final class Key {
+        private final ScriptAst ast;
+        private final Class<?> contextType;
+        private final Map<String, IPipe<?>> pipes;
+        private final PlaceholderStyle placeholderStyle;
+        private final Object[] values;
+        private final int hash;
+
+        Key(ScriptAst ast, Class<?> contextType, Map<String, IPipe<?>> pipes, PlaceholderStyle placeholderStyle, Object[] values) {
+            this.ast = ast;
+            this.contextType = contextType;
+            this.pipes = pipes;
+            this.placeholderStyle = placeholderStyle;
+            this.values = values;
+            int h = System.identityHashCode(ast);
+            h = 31 * h + contextType.hashCode();
+            h = 31 * h + pipes.hashCode();
+            h = 31 * h + placeholderStyle.hashCode();
+            this.hash = 31 * h + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return ast == key.ast && contextType == key.contextType && pipes.equals(key.pipes)
+                    && placeholderStyle == key.placeholderStyle && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.exception.BudgetExceededException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution budgets of one execution, shared by the forked evaluators of the parallel loop.
+ * <p>The deadline is checked every {@link #CLOCK_CHECK_INTERVAL} counted operations
+ * instead of reading the clock at each element.</p>
+ */
+final class ExecutionBudget {
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+    private final Duration timeout;
+    private final long deadline;
+    private final long maxLoopIterations;
+    private final long maxOutputLength;
+    private final AtomicLong iterations = new AtomicLong();
+    private final AtomicLong outputLength = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+
+    ExecutionBudget(Duration timeout, long maxLoopIterations, long maxOutputLength) {
+        this.timeout = timeout;
+        this.deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+        this.maxLoopIterations = maxLoopIterations;
+        this.maxOutputLength = maxOutputLength;
+    }
+
+    void countIteration() {
+        if (maxLoopIterations > 0 && iterations.incrementAndGet() > maxLoopIterations) {
+            throw new BudgetExceededException("Loop iterations exceed the limit: " + maxLoopIterations);
+        }
+        checkDeadline();
+    }
+
+    void countOutput(int length) {
+        if (maxOutputLength > 0 && outputLength.addAndGet(length) > maxOutputLength) {
+            throw new BudgetExceededException("Output length exceeds the limit: " + maxOutputLength);
+        }
+        checkDeadline();
+    }
+
+    private void checkDeadline() {
+        if (timeout != null && operations.incrementAndGet() % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceededException("Execution timed out after " + timeout.toMillis() + " ms");
+        }
+    }
+}
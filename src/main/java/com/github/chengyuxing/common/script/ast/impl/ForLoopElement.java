@@ -14,6 +14,8 @@ public class ForLoopElement implements IElement {
     private final Map<ForContextProperty, String> contextProperties = new HashMap<>();
     private final ValueExpr valueExpr;
     private List<IElement> loopBlock;
+    // variables defined by each iteration, -1: depends on the runtime values, -2: not resolved yet.
+    private volatile int iterationVarCount = -2;
 
     public ForLoopElement(String itemName, ValueExpr valueExpr) {
         this.itemName = itemName;
@@ -36,6 +38,78 @@ public class ForLoopElement implements IElement {
         return loopBlock != null ? loopBlock : Collections.emptyList();
     }
 
+    /**
+     * Returns the number of variables defined by each iteration which includes the item, the context properties
+     * and the {@code #var} of the loop body, the number is fixed only if every branch of the body defines the same
+     * number of variables and the body does not contain a nested loop.
+     *
+     * @return the number of variables or -1 if it depends on the runtime values
+     */
+    int getIterationVarCount() {
+        int count = iterationVarCount;
+        if (count == -2) {
+            count = countVars(getLoopBlock());
+            if (count != -1) {
+                count += 1 + contextProperties.size();
+            }
+            iterationVarCount = count;
+        }
+        return count;
+    }
+
+    private static int countVars(List<IElement> block) {
+        int count = 0;
+        for (IElement element : block) {
+            int n = countVars(element);
+            if (n == -1) {
+                return -1;
+            }
+            count += n;
+        }
+        return count;
+    }
+
+    private static int countVars(IElement element) {
+        if (element instanceof TextElement || element instanceof CheckElement) {
+            return 0;
+        }
+        if (element instanceof VarDefineElement) {
+            return 1;
+        }
+        if (element instanceof GuardElement) {
+            return countVars(((GuardElement) element).getThenBlock());
+        }
+        if (element instanceof IfElement) {
+            IfElement ifElement = (IfElement) element;
+            return sameCount(countVars(ifElement.getThenBlock()), countVars(ifElement.getElseBlock()));
+        }
+        if (element instanceof SwitchElement) {
+            SwitchElement switchElement = (SwitchElement) element;
+            int count = countVars(switchElement.getDefaultBranch().getThenBlock());
+            for (SwitchCaseBranchElement branch : switchElement.getCaseBranches()) {
+                count = sameCount(count, countVars(branch.getThenBlock()));
+            }
+            return count;
+        }
+        if (element instanceof ChooseElement) {
+            ChooseElement chooseElement = (ChooseElement) element;
+            int count = countVars(chooseElement.getDefaultBranch().getThenBlock());
+            for (ChooseWhenBranchElement branch : chooseElement.getWhenBranches()) {
+                count = sameCount(count, countVars(branch.getThenBlock()));
+            }
+            return count;
+        }
+        if (element instanceof ForLoopElement) {
+            // empty loop body defines nothing.
+            return ((ForLoopElement) element).getLoopBlock().isEmpty() ? 0 : -1;
+        }
+        return -1;
+    }
+
+    private static int sameCount(int a, int b) {
+        return a == b ? a : -1;
+    }
+
     void setContextPropertyAlias(ForContextProperty contextProperty, String alias) {
         contextProperties.put(contextProperty, alias);
     }
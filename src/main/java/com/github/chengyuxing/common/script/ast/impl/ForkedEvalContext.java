@@ -0,0 +1,45 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
+import com.github.chengyuxing.common.tuple.Pair;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Forked context to render a part of the script on another thread.
+ */
+final class ForkedEvalContext extends EvalContext {
+    private final EvalContext origin;
+    private final PipeRegistry pipeRegistry;
+
+    ForkedEvalContext(EvalContext origin) {
+        super(origin.getInputArgs(), false);
+        this.origin = origin;
+        this.pipeRegistry = origin.getPipeRegistry();
+        initScope(origin.getCurrentScope());
+        setPlaceholderStyle(origin.getPlaceholderStyle());
+        setProfile(origin.getProfile());
+    }
+
+    @Override
+    protected @NotNull Map<String, IPipe<?>> getPipes() {
+        return origin.getPipes();
+    }
+
+    @Override
+    PipeRegistry getPipeRegistry() {
+        return pipeRegistry;
+    }
+
+    @Override
+    boolean isFormatOverridden() {
+        return origin.isFormatOverridden();
+    }
+
+    @Override
+    protected Pair<String, Map<String, Object>> formatScopePlainText(String text, Map<String, Object> inputs, Map<String, VarMeta> scope) {
+        return origin.formatScopePlainText(text, inputs, scope);
+    }
+}
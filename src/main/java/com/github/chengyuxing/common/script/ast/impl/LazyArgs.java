@@ -0,0 +1,121 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lazy input arguments, the value is resolved at the first access and memoized,
+ * so the expensive argument is only produced when the script actually reads it.
+ * <p>The lazy arguments are never copied by {@link EvalContext}, the map only contains
+ * the resolved entries when iterating. The variable names and the named placeholders are checked
+ * for the conflicts by {@link #hasKey(String)}, which does not resolve the value.</p>
+ * <p>The resolution is thread-safe, each value is resolved at most once.</p>
+ */
+public final class LazyArgs extends AbstractMap<String, Object> {
+    private static final Object NULL = new Object();
+    private final Function<String, ?> resolver;
+    private final Set<String> keys;
+    private final Map<String, Object> resolved = new ConcurrentHashMap<>();
+
+    private LazyArgs(Function<String, ?> resolver, Set<String> keys) {
+        this.resolver = resolver;
+        this.keys = keys;
+    }
+
+    /**
+     * Create the lazy arguments by the resolver.
+     *
+     * @param resolver key -&gt; value, the key exists if the value is not null
+     * @return lazy arguments
+     */
+    public static LazyArgs of(@NotNull Function<String, ?> resolver) {
+        return new LazyArgs(resolver, null);
+    }
+
+    /**
+     * Create the lazy arguments by the suppliers.
+     *
+     * @param suppliers value suppliers keyed by the argument name
+     * @return lazy arguments
+     */
+    public static LazyArgs ofSuppliers(@NotNull Map<String, ? extends Supplier<?>> suppliers) {
+        Map<String, Supplier<?>> copy = new HashMap<>(suppliers);
+        return new LazyArgs(key -> copy.get(key).get(), Collections.unmodifiableSet(copy.keySet()));
+    }
+
+    private Object resolve(String key) {
+        Object value = resolved.get(key);
+        if (value == null) {
+            // the resolver may read other arguments, synchronized block is reentrant.
+            synchronized (this) {
+                value = resolved.get(key);
+                if (value == null) {
+                    if (keys != null && !keys.contains(key)) {
+                        return NULL;
+                    }
+                    value = resolver.apply(key);
+                    if (value == null) {
+                        value = NULL;
+                    }
+                    resolved.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        Object value = resolve((String) key);
+        return value == NULL ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        if (keys != null) {
+            return keys.contains(key);
+        }
+        return resolve((String) key) != NULL;
+    }
+
+    /**
+     * Returns true if the key is declared by the suppliers or its value is resolved and not null,
+     * unlike {@link #containsKey(Object)} the resolver is never invoked.
+     *
+     * @param key key
+     * @return true if the key is known to exist
+     */
+    public boolean hasKey(@NotNull String key) {
+        if (keys != null) {
+            return keys.contains(key);
+        }
+        Object value = resolved.get(key);
+        return value != null && value != NULL;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys != null && keys.isEmpty();
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> entries = new HashMap<>();
+        resolved.forEach((k, v) -> {
+            if (v != NULL || keys != null) {
+                entries.put(k, v == NULL ? null : v);
+            }
+        });
+        return Collections.unmodifiableSet(entries.entrySet());
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Pipe call site of the value expression, the pipe is linked once at compile time,
+ * the pipe declared by the context takes precedence over the linked pipe.
+ */
+final class PipeCall {
+    private static final Object[] NO_PARAMS = new Object[0];
+    private final String name;
+    private final ValueExpr[] params;
+    // all constant params are evaluated at compile time and the array is shared by all calls.
+    private final Object[] constParams;
+    private final IPipe<?> linked;
+    // the linked pipe compiled with the constant params.
+    private final IPipe<?> compiled;
+
+    PipeCall(String name, List<ValueExpr> params, @Nullable PipeRegistry registry) {
+        this.name = name;
+        this.params = params.toArray(new ValueExpr[0]);
+        this.constParams = evalConstParams(this.params);
+        this.linked = (registry != null ? registry : PipeRegistry.builtin()).get(name);
+        this.compiled = linked != null && constParams != null && constParams.length > 0 ? linked.compile(constParams) : null;
+    }
+
+    private static Object[] evalConstParams(ValueExpr[] params) {
+        if (params.length == 0) {
+            return NO_PARAMS;
+        }
+        Object[] values = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            ValueExpr param = params[i];
+            if (!(param instanceof ConstExpr) || param.hasPipes()) {
+                return null;
+            }
+            values[i] = ((ConstExpr) param).getValue();
+        }
+        return values;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Object transform(Object value, EvalContext context) {
+        ScriptProfile profile = context.getProfile();
+        if (profile == null) {
+            return doTransform(value, context);
+        }
+        long start = System.nanoTime();
+        try {
+            return doTransform(value, context);
+        } finally {
+            profile.recordPipe(name, System.nanoTime() - start);
+        }
+    }
+
+    private Object doTransform(Object value, EvalContext context) {
+        IPipe<?> pipe = resolve(context);
+        Object[] values = constParams;
+        if (values == null) {
+            values = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                values[i] = params[i].eval(context);
+            }
+        }
+        IPipe<?> target = compiled != null && pipe == linked ? compiled : pipe;
+        if (pipe.isExpensive() && pipe.isDeterministic()) {
+            return context.memoizePipe(target, value, values);
+        }
+        return target.transform(value, values);
+    }
+
+    /**
+     * Returns true if the pipe can be evaluated at compile time with the constant value.
+     *
+     * @return true if the linked pipe is pure and all params are constant
+     */
+    boolean isFoldable() {
+        return linked != null && linked.isPure() && constParams != null;
+    }
+
+    /**
+     * Evaluate the linked pipe at compile time.
+     *
+     * @param value constant value
+     * @return result
+     * @see #isFoldable()
+     */
+    Object fold(Object value) {
+        return (compiled != null ? compiled : linked).transform(value, constParams);
+    }
+
+    /**
+     * Returns true if the pipe resolved by the context is the linked pipe.
+     *
+     * @param context context
+     * @return true if the context does not declare the pipe
+     */
+    boolean isLinked(EvalContext context) {
+        return resolve(context) == linked;
+    }
+
+    private IPipe<?> resolve(EvalContext context) {
+        PipeRegistry registry = context.getPipeRegistry();
+        if (registry == PipeRegistry.builtin() && linked != null) {
+            return linked;
+        }
+        // a lookup of the declared pipes, no per-registry state to allocate or race on.
+        IPipe<?> pipe = registry.getDeclared(name);
+        if (pipe == null) {
+            pipe = linked;
+        }
+        if (pipe == null) {
+            throw new PipeNotFoundException("Cannot find pipe '" + name + "'");
+        }
+        return pipe;
+    }
+}
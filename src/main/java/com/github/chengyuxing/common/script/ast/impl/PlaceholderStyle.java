@@ -0,0 +1,28 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+/**
+ * Output style of the quoted value holder {@code ${!key}} of the plain text.
+ * <p>The raw value holder {@code ${key}} is always inlined, it is a part of the statement (e.g. column names)
+ * rather than a value.</p>
+ */
+public enum PlaceholderStyle {
+    /**
+     * Inline the quoted value, e.g. {@code ${!name}} -&gt; {@code 'cyx'}, {@code ${!ids}} -&gt; {@code '1', '2'}.
+     */
+    INLINE,
+    /**
+     * Positional parameter, e.g. {@code ${!name}} -&gt; {@code ?}, {@code ${!ids}} -&gt; {@code ?, ?},
+     * the values are collected by {@link EvalResult#getParams()} in order.
+     */
+    POSITIONAL,
+    /**
+     * Named parameter, e.g. {@code ${!user.name}} -&gt; {@code :user_name}, the scope variable is named
+     * with its id e.g. {@code ${!item}} -&gt; {@code :item_0}, the values are collected by both
+     * {@link EvalResult#getParams()} in order and {@link EvalResult#getUsedVars()} by name.
+     * <p>A name is bound to one value within an execution, e.g. {@code ${!a.b}} and {@code ${!a_b}},
+     * or {@code ${!item}} and the input argument {@code item_0}, with different values
+     * fail with {@link com.github.chengyuxing.common.script.exception.EvalRuntimeException EvalRuntimeException}
+     * rather than overwrite each other.</p>
+     */
+    NAMED
+}
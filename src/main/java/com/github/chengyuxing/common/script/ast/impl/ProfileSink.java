@@ -0,0 +1,13 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receiver of the script profiles, e.g. write the profiles to the log or the metrics system.
+ *
+ * @see ScriptProfiler#flush()
+ */
+@FunctionalInterface
+public interface ProfileSink {
+    void accept(@NotNull ScriptProfile profile);
+}
@@ -0,0 +1,118 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.IElement;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Evaluator which records the element timing, the branch hits and the loop iterations into the profile.
+ */
+final class ProfilingEvaluator extends RabbitScriptEvaluator {
+    private final ScriptAst ast;
+    private final ScriptProfile profile;
+
+    ProfilingEvaluator(@NotNull EvalContext ctx, ScriptAst ast, ScriptProfile profile) {
+        super(ctx);
+        this.ast = ast;
+        this.profile = profile;
+    }
+
+    private ScriptProfile.ElementProfile profile(IElement element) {
+        return profile.element(element, ast.getLine(element));
+    }
+
+    @Override
+    protected void onBranch(IElement element, int branch) {
+        profile(element).recordBranch(branch);
+    }
+
+    @Override
+    protected void onLoop(ForLoopElement element, int iterations) {
+        profile(element).recordIterations(iterations);
+    }
+
+    @Override
+    protected RabbitScriptEvaluator forkEvaluator(EvalContext ctx) {
+        return new ProfilingEvaluator(ctx, ast, profile);
+    }
+
+    @Override
+    public Void visitIf(IfElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitIf(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitForLoop(ForLoopElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitForLoop(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitVarDefine(VarDefineElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitVarDefine(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitCheck(CheckElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitCheck(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitGuard(GuardElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitGuard(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitSwitch(SwitchElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitSwitch(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitChoose(ChooseElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitChoose(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Void visitPlainText(TextElement element) {
+        long start = System.nanoTime();
+        try {
+            return super.visitPlainText(element);
+        } finally {
+            profile(element).record(System.nanoTime() - start);
+        }
+    }
+}
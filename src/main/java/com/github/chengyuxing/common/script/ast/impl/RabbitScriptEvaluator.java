@@ -5,34 +5,74 @@ import com.github.chengyuxing.common.script.ast.IElement;
 import com.github.chengyuxing.common.script.ast.IElementVisitor;
 import com.github.chengyuxing.common.script.ast.ScriptAst;
 import com.github.chengyuxing.common.script.exception.CheckViolationException;
+import com.github.chengyuxing.common.script.exception.EvalRuntimeException;
 import com.github.chengyuxing.common.script.exception.GuardViolationException;
-import com.github.chengyuxing.common.script.lang.Comparators;
 import com.github.chengyuxing.common.script.lang.ForContextProperty;
-import com.github.chengyuxing.common.tuple.Pair;
 import com.github.chengyuxing.common.util.ValueUtils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import static com.github.chengyuxing.common.util.StringUtils.NEW_LINE;
 
 public class RabbitScriptEvaluator implements IElementVisitor<Void> {
+    // output buffer larger than this will not be retained after release.
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final int PARALLEL_CHUNKS = Runtime.getRuntime().availableProcessors() * 4;
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 16;
     private final CleanStringJoiner sql;
-    private final EvalContext ctx;
-    private long varSeq = 0;
     private final Map<String, Object> usedVars = new HashMap<>();
+    private final List<Object> params = new ArrayList<>();
+    private EvalContext ctx;
+    private long varSeq = 0;
+    // shared by the chunks of the parallel loop.
+    private ExecutionBudget budget;
 
     public RabbitScriptEvaluator(@NotNull EvalContext ctx) {
         this.ctx = ctx;
         this.sql = new CleanStringJoiner(NEW_LINE);
     }
 
-    public EvalResult execute(@NotNull ScriptAst script) {
-        for (IElement element : script.getElements()) {
-            element.accept(this);
+    /**
+     * Reset the evaluator with a new context to reuse it for the next execution.
+     *
+     * @param ctx evaluation context
+     * @return this evaluator
+     */
+    public RabbitScriptEvaluator reset(@NotNull EvalContext ctx) {
+        this.ctx = ctx;
+        this.varSeq = 0;
+        this.sql.clear();
+        this.usedVars.clear();
+        this.params.clear();
+        return this;
+    }
+
+    /**
+     * Release the current context and the execution state, the evaluator
+     * must be {@link #reset(EvalContext) reset} before the next execution.
+     */
+    public void release() {
+        if (this.ctx != null) {
+            this.ctx.clearInputValues();
         }
-        return new EvalResult(sql.toString(), usedVars);
+        this.ctx = null;
+        this.budget = null;
+        this.varSeq = 0;
+        this.sql.clear(MAX_RETAINED_BUFFER);
+        this.usedVars.clear();
+        this.params.clear();
+    }
+
+    public EvalResult execute(@NotNull ScriptAst script) {
+        budget = ctx.startBudget();
+        visitElements(script.getElements());
+        Map<String, Object> vars = usedVars.isEmpty() ? Collections.emptyMap() : new HashMap<>(usedVars);
+        List<Object> values = params.isEmpty() ? Collections.emptyList() : new ArrayList<>(params);
+        return new EvalResult(sql.toString(), vars, values);
     }
 
     private void defineVars(String name, Object value) {
@@ -40,25 +80,57 @@ public class RabbitScriptEvaluator implements IElementVisitor<Void> {
         ctx.bindScope(name, varMeta);
     }
 
-    private void visitBlock(List<IElement> elements, @Nullable Runnable beforeVisit) {
-        ctx.pushScope();
-        if (beforeVisit != null) {
-            beforeVisit.run();
-        }
-        for (IElement e : elements) {
-            e.accept(this);
+    private void visitElements(List<IElement> elements) {
+        for (int i = 0, j = elements.size(); i < j; i++) {
+            elements.get(i).accept(this);
         }
+    }
+
+    private void visitBlock(List<IElement> elements) {
+        ctx.pushScope();
+        visitElements(elements);
         ctx.popScope();
     }
 
+    /**
+     * Invoked after the branch of the element is chosen, the branch index of {@code #if} is 0: then, 1: else,
+     * of {@code #guard} is 0: passed, 1: violated, of {@code #switch} and {@code #choose} is the index of
+     * the case/when branch, the default branch is the number of the case/when branches.
+     *
+     * @param element element
+     * @param branch  index of the chosen branch
+     */
+    protected void onBranch(IElement element, int branch) {
+    }
+
+    /**
+     * Invoked after the {@code #for} loop is done.
+     *
+     * @param element    element
+     * @param iterations number of the iterations
+     */
+    protected void onLoop(ForLoopElement element, int iterations) {
+    }
+
+    /**
+     * Create the evaluator to render a chunk of the parallel loop.
+     *
+     * @param ctx forked context
+     * @return evaluator
+     */
+    protected RabbitScriptEvaluator forkEvaluator(EvalContext ctx) {
+        return new RabbitScriptEvaluator(ctx);
+    }
+
     @Override
     public Void visitIf(IfElement element) {
         boolean ok = element.getExpr().eval(ctx);
+        onBranch(element, ok ? 0 : 1);
 
         List<IElement> block = ok
                 ? element.getThenBlock()
                 : element.getElseBlock();
-        visitBlock(block, null);
+        visitBlock(block);
         return null;
     }
 
@@ -67,34 +139,97 @@ public class RabbitScriptEvaluator implements IElementVisitor<Void> {
         Object obj = element.getValueExpr().eval(ctx);
         Iterator<?> it = ValueUtils.asIterable(obj).iterator();
         if (!it.hasNext()) {
+            onLoop(element, 0);
             return null;
         }
         // if empty loop body just do nothing.
         List<IElement> loopBlock = element.getLoopBlock();
         if (loopBlock.isEmpty()) {
+            onLoop(element, 0);
             return null;
         }
-        for (int i = 0; it.hasNext(); i++) {
-            int index = i;
-            visitBlock(loopBlock, () -> {
-                defineVars(element.getItemName(), it.next());
-
-                String indexAlias = element.getContextPropertyAlias(ForContextProperty.index);
-                String firstAlias = element.getContextPropertyAlias(ForContextProperty.first);
-                String lastAlias = element.getContextPropertyAlias(ForContextProperty.last);
-                String oddAlias = element.getContextPropertyAlias(ForContextProperty.odd);
-                String evenAlias = element.getContextPropertyAlias(ForContextProperty.even);
-
-                if (indexAlias != null) defineVars(indexAlias, index);
-                if (firstAlias != null) defineVars(firstAlias, index == 0);
-                if (lastAlias != null) defineVars(lastAlias, !it.hasNext());
-                if (oddAlias != null) defineVars(oddAlias, (index & 1) == 1);
-                if (evenAlias != null) defineVars(evenAlias, (index & 1) == 0);
-            });
+        LoopVars loopVars = new LoopVars(element);
+        Executor executor = ctx.getParallelLoopExecutor();
+        if (executor != null && element.getIterationVarCount() != -1) {
+            int threshold = ctx.getParallelLoopThreshold();
+            if (!(obj instanceof Collection) || ((Collection<?>) obj).size() >= threshold) {
+                List<Object> items = new ArrayList<>();
+                it.forEachRemaining(items::add);
+                if (items.size() >= threshold) {
+                    visitForLoopParallel(element, loopVars, items, executor);
+                    onLoop(element, items.size());
+                    return null;
+                }
+                it = items.iterator();
+            }
+        }
+        int i = 0;
+        for (; it.hasNext(); i++) {
+            Object item = it.next();
+            visitLoopIteration(loopBlock, loopVars, item, i, !it.hasNext());
         }
+        onLoop(element, i);
         return null;
     }
 
+    private void visitLoopIteration(List<IElement> loopBlock, LoopVars loopVars, Object item, int index, boolean last) {
+        if (budget != null) {
+            budget.countIteration();
+        }
+        ctx.pushScope();
+        defineVars(loopVars.item, item);
+
+        if (loopVars.index != null) defineVars(loopVars.index, index);
+        if (loopVars.first != null) defineVars(loopVars.first, index == 0);
+        if (loopVars.last != null) defineVars(loopVars.last, last);
+        if (loopVars.odd != null) defineVars(loopVars.odd, (index & 1) == 1);
+        if (loopVars.even != null) defineVars(loopVars.even, (index & 1) == 0);
+
+        visitElements(loopBlock);
+        ctx.popScope();
+    }
+
+    private void visitForLoopParallel(ForLoopElement element, LoopVars loopVars, List<Object> items, Executor executor) {
+        List<IElement> loopBlock = element.getLoopBlock();
+        int size = items.size();
+        int varsPerIteration = element.getIterationVarCount();
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, (size + PARALLEL_CHUNKS - 1) / PARALLEL_CHUNKS);
+        List<CompletableFuture<RabbitScriptEvaluator>> chunks = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            int from = start;
+            int to = Math.min(size, start + chunkSize);
+            // the variable sequence of each chunk starts from where the sequential rendering would be.
+            RabbitScriptEvaluator chunk = forkEvaluator(ctx.fork());
+            chunk.varSeq = varSeq + (long) from * varsPerIteration;
+            chunk.budget = budget;
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    chunk.visitLoopIteration(loopBlock, loopVars, items.get(i), i, i == size - 1);
+                }
+                return chunk;
+            }, executor));
+        }
+        varSeq += (long) size * varsPerIteration;
+        for (CompletableFuture<RabbitScriptEvaluator> future : chunks) {
+            RabbitScriptEvaluator chunk;
+            try {
+                chunk = future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new EvalRuntimeException("Parallel loop rendering failed.", cause);
+            }
+            sql.add(chunk.sql.toString());
+            ctx.collectUsedVars(usedVars, chunk.usedVars);
+            params.addAll(chunk.params);
+        }
+    }
+
     @Override
     public Void visitVarDefine(VarDefineElement element) {
         Object value = element.getValueExpr().eval(ctx);
@@ -114,8 +249,9 @@ public class RabbitScriptEvaluator implements IElementVisitor<Void> {
     @Override
     public Void visitGuard(GuardElement element) {
         boolean ok = element.getExpr().eval(ctx);
+        onBranch(element, ok ? 0 : 1);
         if (ok) {
-            visitBlock(element.getThenBlock(), null);
+            visitBlock(element.getThenBlock());
         } else {
             throw new GuardViolationException(element.getMessage());
         }
@@ -125,38 +261,59 @@ public class RabbitScriptEvaluator implements IElementVisitor<Void> {
     @Override
     public Void visitSwitch(SwitchElement element) {
         Object switchValue = element.getValueExpr().eval(ctx);
-        for (SwitchCaseBranchElement caseBranch : element.getCaseBranches()) {
-            for (ValueExpr expr : caseBranch.getValueExpr()) {
-                Object caseValue = expr.eval(ctx);
-                if (Comparators.compare(switchValue, "=", caseValue)) {
-                    visitBlock(caseBranch.getThenBlock(), null);
-                    return null;
-                }
-            }
+        int idx = element.matchCase(switchValue, ctx);
+        if (idx != -1) {
+            onBranch(element, idx);
+            visitBlock(element.getCaseBranches().get(idx).getThenBlock());
+            return null;
         }
-        visitBlock(element.getDefaultBranch().getThenBlock(), null);
+        onBranch(element, element.getCaseBranches().size());
+        visitBlock(element.getDefaultBranch().getThenBlock());
         return null;
     }
 
     @Override
     public Void visitChoose(ChooseElement element) {
-        for (ChooseWhenBranchElement when : element.getWhenBranches()) {
+        List<ChooseWhenBranchElement> whenBranches = element.getWhenBranches();
+        for (int i = 0; i < whenBranches.size(); i++) {
+            ChooseWhenBranchElement when = whenBranches.get(i);
             boolean ok = when.getExpr().eval(ctx);
             if (ok) {
-                visitBlock(when.getThenBlock(), null);
+                onBranch(element, i);
+                visitBlock(when.getThenBlock());
                 return null;
             }
         }
-        visitBlock(element.getDefaultBranch().getThenBlock(), null);
+        onBranch(element, whenBranches.size());
+        visitBlock(element.getDefaultBranch().getThenBlock());
         return null;
     }
 
     @Override
     public Void visitPlainText(TextElement element) {
-        String text = element.getText();
-        Pair<String, Map<String, Object>> result = ctx.formatScopePlainText(text);
-        usedVars.putAll(result.getItem2());
-        sql.add(result.getItem1());
+        CharSequence text = ctx.formatPlainText(element, params, usedVars);
+        if (budget != null) {
+            budget.countOutput(text.length() + NEW_LINE.length());
+        }
+        sql.add(text);
         return null;
     }
+
+    private static final class LoopVars {
+        final String item;
+        final String index;
+        final String first;
+        final String last;
+        final String odd;
+        final String even;
+
+        LoopVars(ForLoopElement element) {
+            this.item = element.getItemName();
+            this.index = element.getContextPropertyAlias(ForContextProperty.index);
+            this.first = element.getContextPropertyAlias(ForContextProperty.first);
+            this.last = element.getContextPropertyAlias(ForContextProperty.last);
+            this.odd = element.getContextPropertyAlias(ForContextProperty.odd);
+            this.even = element.getContextPropertyAlias(ForContextProperty.even);
+        }
+    }
 }
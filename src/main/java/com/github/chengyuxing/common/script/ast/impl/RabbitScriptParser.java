@@ -2,11 +2,15 @@ package com.github.chengyuxing.common.script.ast.impl;
 
 import com.github.chengyuxing.common.script.ast.IElement;
 import com.github.chengyuxing.common.script.ast.IExpr;
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
 import com.github.chengyuxing.common.script.exception.ScriptSyntaxException;
 import com.github.chengyuxing.common.script.lang.ForContextProperty;
 import com.github.chengyuxing.common.script.lang.Token;
 import com.github.chengyuxing.common.script.lang.TokenType;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
 import com.github.chengyuxing.common.tuple.Pair;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
 import java.math.BigDecimal;
@@ -16,11 +20,25 @@ import static com.github.chengyuxing.common.util.StringUtils.NEW_LINE;
 
 public class RabbitScriptParser {
     private final List<Token> tokens;
+    private final PipeRegistry pipeRegistry;
+    private final Map<IElement, Integer> lines = new IdentityHashMap<>();
     private int currentTokenIndex;
     private Token currentToken;
 
     public RabbitScriptParser(List<Token> tokens) {
+        this(tokens, null);
+    }
+
+    /**
+     * Construct a new RabbitScriptParser with the pipe registry.
+     *
+     * @param tokens       tokens
+     * @param pipeRegistry pipe registry to link the pipes at compile time, if not null,
+     *                     the pipe which not found in the registry will be rejected
+     */
+    public RabbitScriptParser(List<Token> tokens, @Nullable PipeRegistry pipeRegistry) {
         this.tokens = tokens;
+        this.pipeRegistry = pipeRegistry;
         this.currentTokenIndex = 0;
         this.currentToken = tokens.get(currentTokenIndex);
     }
@@ -177,14 +195,32 @@ public class RabbitScriptParser {
         return params;
     }
 
+    static String arity(IPipe<?> pipe) {
+        if (pipe.minParams() == pipe.maxParams()) {
+            return String.valueOf(pipe.minParams());
+        }
+        if (pipe.maxParams() == Integer.MAX_VALUE) {
+            return "at least " + pipe.minParams();
+        }
+        return pipe.minParams() + " to " + pipe.maxParams();
+    }
+
     private List<Pair<String, List<ValueExpr>>> parsePipes() {
         List<Pair<String, List<ValueExpr>>> pipes = new ArrayList<>();
         while (nonEndToken(currentToken, TokenType.NEWLINE)) {
             if (peek(TokenType.PIPE_SYMBOL)) {
                 advance();
-                String pipeName = currentToken.getValue();
+                Token pipeToken = currentToken;
+                String pipeName = pipeToken.getValue();
                 eat(TokenType.IDENTIFIER);
+                IPipe<?> pipe = pipeRegistry != null ? pipeRegistry.get(pipeName) : null;
+                if (pipeRegistry != null && pipe == null) {
+                    throw new PipeNotFoundException("Cannot find pipe '" + pipeName + "' at: " + pipeToken);
+                }
                 List<ValueExpr> params = parsePipeParams();
+                if (pipe != null && (params.size() < pipe.minParams() || params.size() > pipe.maxParams())) {
+                    throw new ScriptSyntaxException("Pipe '" + pipeName + "' takes " + arity(pipe) + " params but " + params.size() + " given at: " + pipeToken);
+                }
                 pipes.add(Pair.of(pipeName, params));
             } else {
                 break;
@@ -195,7 +231,7 @@ public class RabbitScriptParser {
 
     private ValueExpr parseValueWithPipes() {
         ValueExpr expr = parseValue();
-        expr.setPipes(parsePipes());
+        expr.setPipes(parsePipes(), pipeRegistry);
         return expr;
     }
 
@@ -448,6 +484,13 @@ public class RabbitScriptParser {
     }
 
     private IElement parseElement() {
+        int line = currentToken.getLine() + 1;
+        IElement element = parseStatement();
+        lines.put(element, line);
+        return element;
+    }
+
+    private IElement parseStatement() {
         switch (currentToken.getType()) {
             case IF:
                 return parseIf();
@@ -487,4 +530,13 @@ public class RabbitScriptParser {
         }
         return Collections.unmodifiableList(elements);
     }
+
+    /**
+     * Returns the source line of the parsed elements.
+     *
+     * @return source line (starts from 1) keyed by the element
+     */
+    public @Unmodifiable Map<IElement, Integer> getLines() {
+        return Collections.unmodifiableMap(lines);
+    }
 }
@@ -0,0 +1,624 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.IElement;
+import com.github.chengyuxing.common.script.ast.IExpr;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
+import com.github.chengyuxing.common.script.exception.ScriptSyntaxException;
+import com.github.chengyuxing.common.script.lang.ForContextProperty;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
+import com.github.chengyuxing.common.tuple.Pair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * <h2>Binary codec of the compiled script</h2>
+ * <p>Encode the {@link ScriptAst} into a compact versioned binary format and decode it without
+ * lexing and parsing, e.g. ship the precompiled scripts with the application and load them from
+ * a memory-mapped file at startup.</p>
+ * <p>The format starts with the magic {@code RSAB} and the format {@link #VERSION}, integers are
+ * variable-length encoded and strings are length-prefixed UTF-8, the pipes are linked to the registry
+ * again when decoding.</p>
+ * <p>Version 2 records the source line of each element, the data of version 1 can still be decoded
+ * without the source lines.</p>
+ * <p>Only the constant values produced by the parser and the specializer of the primitive types
+ * (string, boolean, number) are supported.</p>
+ */
+public final class ScriptAstCodec {
+    /**
+     * Current format version.
+     */
+    public static final int VERSION = 2;
+    private static final int MAGIC = 0x52534142;
+    private static final int KIND_SINGLE = 1;
+    private static final int KIND_MULTIPLE = 2;
+
+    private static final int TEXT = 1;
+    private static final int IF = 2;
+    private static final int FOR = 3;
+    private static final int VAR_DEFINE = 4;
+    private static final int CHECK = 5;
+    private static final int GUARD = 6;
+    private static final int SWITCH = 7;
+    private static final int CHOOSE = 8;
+
+    private static final int BINARY = 1;
+    private static final int LOGIC = 2;
+    private static final int NOT = 3;
+    private static final int UNARY = 4;
+
+    private static final int CONST = 1;
+    private static final int VAR = 2;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int DECIMAL = 4;
+    private static final int INT = 5;
+    private static final int LONG = 6;
+    private static final int DOUBLE = 7;
+
+    private static final ForContextProperty[] FOR_PROPERTIES = ForContextProperty.values();
+
+    private ScriptAstCodec() {
+    }
+
+    /**
+     * Encode the script ast.
+     *
+     * @param ast script ast
+     * @return bytes
+     * @throws IllegalArgumentException if the ast contains the unsupported node or constant value
+     */
+    public static byte[] encode(@NotNull ScriptAst ast) {
+        Encoder encoder = new Encoder();
+        encoder.writeHeader(KIND_SINGLE);
+        encoder.writeAst(ast);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Encode the script asts keyed by name, e.g. all scripts of the application.
+     *
+     * @param asts script asts keyed by name
+     * @return bytes
+     * @throws IllegalArgumentException if any ast contains the unsupported node or constant value
+     */
+    public static byte[] encodeAll(@NotNull Map<String, ScriptAst> asts) {
+        Encoder encoder = new Encoder();
+        encoder.writeHeader(KIND_MULTIPLE);
+        encoder.writeInt(asts.size());
+        for (Map.Entry<String, ScriptAst> entry : asts.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeAst(entry.getValue());
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Decode the script ast which encoded by {@link #encode(ScriptAst)} from the current position of the buffer.
+     *
+     * @param buffer   buffer
+     * @param registry pipe registry to link the pipes, if not null, the pipe which not found
+     *                 in the registry will be rejected as {@link RabbitScriptParser} does,
+     *                 use the builtin registry if null
+     * @return script ast
+     * @throws IllegalArgumentException if the data is not the supported format
+     */
+    public static ScriptAst decode(@NotNull ByteBuffer buffer, @Nullable PipeRegistry registry) {
+        Decoder decoder = new Decoder(buffer, registry);
+        decoder.readHeader(KIND_SINGLE);
+        return decoder.readAst();
+    }
+
+    /**
+     * Decode the script asts which encoded by {@link #encodeAll(Map)} from the current position of the buffer.
+     *
+     * @param buffer   buffer
+     * @param registry pipe registry to link the pipes
+     * @return script asts keyed by name in the encoding order
+     * @throws IllegalArgumentException if the data is not the supported format
+     * @see #decode(ByteBuffer, PipeRegistry)
+     */
+    public static Map<String, ScriptAst> decodeAll(@NotNull ByteBuffer buffer, @Nullable PipeRegistry registry) {
+        Decoder decoder = new Decoder(buffer, registry);
+        decoder.readHeader(KIND_MULTIPLE);
+        int size = decoder.readInt();
+        Map<String, ScriptAst> asts = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; i++) {
+            String name = decoder.readString();
+            asts.put(name, decoder.readAst());
+        }
+        return asts;
+    }
+
+    private static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private ScriptAst ast;
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        void writeHeader(int kind) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write(MAGIC >>> shift);
+            }
+            out.write(VERSION);
+            out.write(kind);
+        }
+
+        void writeInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        void writeLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        // length + 1, 0 means null.
+        void writeString(String s) {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length + 1);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeAst(ScriptAst ast) {
+            this.ast = ast;
+            List<IElement> elements = ast.getElements();
+            writeElements(elements);
+            Map<String, IElement> fragments = ast.getFragments();
+            writeInt(fragments.size());
+            for (Map.Entry<String, IElement> entry : fragments.entrySet()) {
+                writeString(entry.getKey());
+                // the fragment is the top-level element normally, refer it by index + 1.
+                int idx = indexOf(elements, entry.getValue());
+                writeInt(idx + 1);
+                if (idx == -1) {
+                    writeElement(entry.getValue());
+                }
+            }
+        }
+
+        private static int indexOf(List<IElement> elements, IElement element) {
+            for (int i = 0; i < elements.size(); i++) {
+                if (elements.get(i) == element) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void writeElements(List<? extends IElement> elements) {
+            writeInt(elements.size());
+            for (IElement element : elements) {
+                writeElement(element);
+            }
+        }
+
+        // line + 1, 0 means unknown.
+        void writeTag(int tag, IElement element) {
+            out.write(tag);
+            writeInt(ast.getLine(element) + 1);
+        }
+
+        void writeElement(IElement element) {
+            if (element instanceof TextElement) {
+                writeTag(TEXT, element);
+                writeString(((TextElement) element).getText());
+            } else if (element instanceof IfElement) {
+                IfElement e = (IfElement) element;
+                writeTag(IF, element);
+                writeCondition(e.getExpr());
+                writeElements(e.getThenBlock());
+                writeElements(e.getElseBlock());
+            } else if (element instanceof ForLoopElement) {
+                ForLoopElement e = (ForLoopElement) element;
+                writeTag(FOR, element);
+                writeString(e.getItemName());
+                writeValue(e.getValueExpr());
+                for (ForContextProperty property : FOR_PROPERTIES) {
+                    writeString(e.getContextPropertyAlias(property));
+                }
+                writeElements(e.getLoopBlock());
+            } else if (element instanceof VarDefineElement) {
+                VarDefineElement e = (VarDefineElement) element;
+                writeTag(VAR_DEFINE, element);
+                writeString(e.getName());
+                writeValue(e.getValueExpr());
+            } else if (element instanceof CheckElement) {
+                CheckElement e = (CheckElement) element;
+                writeTag(CHECK, element);
+                writeCondition(e.getExpr());
+                writeString(e.getMessage());
+            } else if (element instanceof GuardElement) {
+                GuardElement e = (GuardElement) element;
+                writeTag(GUARD, element);
+                writeCondition(e.getExpr());
+                writeElements(e.getThenBlock());
+                writeString(e.getMessage());
+            } else if (element instanceof SwitchElement) {
+                SwitchElement e = (SwitchElement) element;
+                writeTag(SWITCH, element);
+                writeValue(e.getValueExpr());
+                writeInt(e.getCaseBranches().size());
+                for (SwitchCaseBranchElement branch : e.getCaseBranches()) {
+                    writeValues(branch.getValueExpr());
+                    writeElements(branch.getThenBlock());
+                }
+                writeElements(e.getDefaultBranch().getThenBlock());
+            } else if (element instanceof ChooseElement) {
+                ChooseElement e = (ChooseElement) element;
+                writeTag(CHOOSE, element);
+                writeInt(e.getWhenBranches().size());
+                for (ChooseWhenBranchElement branch : e.getWhenBranches()) {
+                    writeCondition(branch.getExpr());
+                    writeElements(branch.getThenBlock());
+                }
+                writeElements(e.getDefaultBranch().getThenBlock());
+            } else {
+                throw new IllegalArgumentException("Unsupported element: " + element.getClass().getName());
+            }
+        }
+
+        void writeCondition(IExpr<Boolean> expr) {
+            if (expr instanceof BinaryExpr) {
+                BinaryExpr e = (BinaryExpr) expr;
+                out.write(BINARY);
+                writeValue(e.getLeft());
+                writeString(e.getOp());
+                writeValue(e.getRight());
+            } else if (expr instanceof LogicExpr) {
+                LogicExpr e = (LogicExpr) expr;
+                out.write(LOGIC);
+                writeCondition(e.getLeft());
+                writeString(e.getOp());
+                writeCondition(e.getRight());
+            } else if (expr instanceof NotExpr) {
+                out.write(NOT);
+                writeCondition(((NotExpr) expr).getExpr());
+            } else if (expr instanceof UnaryExpr) {
+                out.write(UNARY);
+                writeValue(((UnaryExpr) expr).getLeft());
+            } else {
+                throw new IllegalArgumentException("Unsupported expression: " + expr.getClass().getName());
+            }
+        }
+
+        void writeValues(List<ValueExpr> values) {
+            writeInt(values.size());
+            for (ValueExpr value : values) {
+                writeValue(value);
+            }
+        }
+
+        void writeValue(ValueExpr expr) {
+            if (expr instanceof ConstExpr) {
+                out.write(CONST);
+                writeConst(((ConstExpr) expr).getValue());
+            } else if (expr instanceof VarExpr) {
+                out.write(VAR);
+                List<String> keys = ((VarExpr) expr).getKeys();
+                writeInt(keys.size());
+                for (String key : keys) {
+                    writeString(key);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported value expression: " + expr.getClass().getName());
+            }
+            List<Pair<String, List<ValueExpr>>> pipes = expr.getPipes();
+            writeInt(pipes.size());
+            for (Pair<String, List<ValueExpr>> pipe : pipes) {
+                writeString(pipe.getItem1());
+                writeValues(pipe.getItem2());
+            }
+        }
+
+        void writeConst(Object value) {
+            if (value == null) {
+                out.write(NULL);
+            } else if (value instanceof String) {
+                out.write(STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                out.write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof BigDecimal) {
+                out.write(DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof Integer) {
+                out.write(INT);
+                writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.write(LONG);
+                writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.write(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else {
+                throw new IllegalArgumentException("Unsupported constant value type: " + value.getClass().getName());
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final PipeRegistry registry;
+        private int version;
+        private Map<IElement, Integer> lines;
+
+        Decoder(ByteBuffer buffer, PipeRegistry registry) {
+            this.buffer = buffer;
+            this.registry = registry;
+        }
+
+        private int readByte() {
+            if (!buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected end of the data at: " + buffer.position());
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        void readHeader(int kind) {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                magic = (magic << 8) | readByte();
+            }
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException("Not a compiled script data.");
+            }
+            version = readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported compiled script version: " + version + ", expected: 1 to " + VERSION);
+            }
+            int actualKind = readByte();
+            if (actualKind != kind) {
+                throw new IllegalArgumentException(kind == KIND_SINGLE
+                        ? "The data contains multiple scripts, use decodeAll instead."
+                        : "The data contains a single script, use decode instead.");
+            }
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed integer at: " + buffer.position());
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed integer at: " + buffer.position());
+        }
+
+        String readString() {
+            int length = readInt() - 1;
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed string at: " + buffer.position());
+            }
+            String s;
+            if (buffer.hasArray()) {
+                s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+
+        ScriptAst readAst() {
+            lines = new IdentityHashMap<>();
+            List<IElement> elements = readElements();
+            int size = readInt();
+            Map<String, IElement> fragments = new HashMap<>((int) (size / 0.75f) + 1);
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                int idx = readInt() - 1;
+                fragments.put(key, idx == -1 ? readElement() : elements.get(idx));
+            }
+            return new ScriptAst(elements,
+                    fragments.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(fragments),
+                    Collections.unmodifiableMap(lines));
+        }
+
+        List<IElement> readElements() {
+            int size = readInt();
+            List<IElement> elements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                elements.add(readElement());
+            }
+            return elements;
+        }
+
+        IElement readElement() {
+            int tag = readByte();
+            int line = version > 1 ? readInt() - 1 : -1;
+            IElement element = readStatement(tag);
+            if (line != -1) {
+                lines.put(element, line);
+            }
+            return element;
+        }
+
+        IElement readStatement(int tag) {
+            switch (tag) {
+                case TEXT:
+                    return new TextElement(readString());
+                case IF:
+                    return new IfElement(readCondition(), readElements(), readElements());
+                case FOR: {
+                    String itemName = readString();
+                    ForLoopElement element = new ForLoopElement(itemName, readValue());
+                    for (ForContextProperty property : FOR_PROPERTIES) {
+                        String alias = readString();
+                        if (alias != null) {
+                            element.setContextPropertyAlias(property, alias);
+                        }
+                    }
+                    element.setLoopBlock(readElements());
+                    return element;
+                }
+                case VAR_DEFINE:
+                    return new VarDefineElement(readString(), readValue());
+                case CHECK:
+                    return new CheckElement(readCondition(), readString());
+                case GUARD:
+                    return new GuardElement(readCondition(), readElements(), readString());
+                case SWITCH: {
+                    ValueExpr valueExpr = readValue();
+                    int size = readInt();
+                    List<SwitchCaseBranchElement> caseBranches = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        caseBranches.add(new SwitchCaseBranchElement(readValues(), readElements()));
+                    }
+                    return new SwitchElement(valueExpr, caseBranches, readDefaultBranch());
+                }
+                case CHOOSE: {
+                    int size = readInt();
+                    List<ChooseWhenBranchElement> whenBranches = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        whenBranches.add(new ChooseWhenBranchElement(readCondition(), readElements()));
+                    }
+                    return new ChooseElement(whenBranches, readDefaultBranch());
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown element tag " + tag + " before: " + buffer.position());
+            }
+        }
+
+        BranchElement readDefaultBranch() {
+            BranchElement branch = new BranchElement();
+            branch.setThenBlock(readElements());
+            return branch;
+        }
+
+        IExpr<Boolean> readCondition() {
+            int tag = readByte();
+            switch (tag) {
+                case BINARY:
+                    return new BinaryExpr(readValue(), readString(), readValue());
+                case LOGIC:
+                    return new LogicExpr(readCondition(), readString(), readCondition());
+                case NOT:
+                    return new NotExpr(readCondition());
+                case UNARY:
+                    return new UnaryExpr(readValue());
+                default:
+                    throw new IllegalArgumentException("Unknown expression tag " + tag + " at: " + (buffer.position() - 1));
+            }
+        }
+
+        List<ValueExpr> readValues() {
+            int size = readInt();
+            List<ValueExpr> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readValue());
+            }
+            return values;
+        }
+
+        ValueExpr readValue() {
+            int tag = readByte();
+            ValueExpr expr;
+            switch (tag) {
+                case CONST:
+                    expr = new ConstExpr(readConst());
+                    break;
+                case VAR: {
+                    int size = readInt();
+                    String[] keys = new String[size];
+                    for (int i = 0; i < size; i++) {
+                        keys[i] = readString();
+                    }
+                    expr = new VarExpr(Collections.unmodifiableList(Arrays.asList(keys)));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag + " at: " + (buffer.position() - 1));
+            }
+            int size = readInt();
+            List<Pair<String, List<ValueExpr>>> pipes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                List<ValueExpr> params = readValues();
+                checkPipe(name, params.size());
+                pipes.add(Pair.of(name, params));
+            }
+            expr.setPipes(pipes, registry);
+            return expr;
+        }
+
+        private void checkPipe(String name, int params) {
+            if (registry == null) {
+                return;
+            }
+            IPipe<?> pipe = registry.get(name);
+            if (pipe == null) {
+                throw new PipeNotFoundException("Cannot find pipe '" + name + "'");
+            }
+            if (params < pipe.minParams() || params > pipe.maxParams()) {
+                throw new ScriptSyntaxException("Pipe '" + name + "' takes " + RabbitScriptParser.arity(pipe) + " params but " + params + " given");
+            }
+        }
+
+        Object readConst() {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case DECIMAL:
+                    return new BigDecimal(readString());
+                case INT:
+                    return readInt();
+                case LONG:
+                    return readLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                default:
+                    throw new IllegalArgumentException("Unknown constant tag " + tag + " at: " + (buffer.position() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.IElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution profile of a script recorded by {@link ScriptProfiler}, thread-safe.
+ * <p>The element time is inclusive, e.g. the time of {@code #for} contains the time of its body,
+ * the pipe time is recorded by the pipe name.</p>
+ */
+public final class ScriptProfile {
+    private final String script;
+    private final Map<IElement, ElementProfile> elements = new ConcurrentHashMap<>();
+    private final Map<String, PipeProfile> pipes = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+
+    ScriptProfile(String script) {
+        this.script = script;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * Returns the profiles of the executed elements.
+     *
+     * @return element profiles in order of the source line
+     */
+    public @NotNull List<ElementProfile> getElements() {
+        List<ElementProfile> list = new ArrayList<>(elements.values());
+        list.sort(Comparator.comparingInt(ElementProfile::getLine));
+        return list;
+    }
+
+    /**
+     * Returns the profiles of the executed pipes.
+     *
+     * @return pipe profiles keyed by the pipe name
+     */
+    public @NotNull Map<String, PipeProfile> getPipes() {
+        return new TreeMap<>(pipes);
+    }
+
+    /**
+     * Discard the recorded data.
+     */
+    public void reset() {
+        elements.clear();
+        pipes.clear();
+        executions.reset();
+    }
+
+    void recordExecution() {
+        executions.increment();
+    }
+
+    ElementProfile element(IElement element, int line) {
+        ElementProfile profile = elements.get(element);
+        if (profile == null) {
+            profile = elements.computeIfAbsent(element, e -> new ElementProfile(e, line));
+        }
+        return profile;
+    }
+
+    void recordPipe(String name, long nanos) {
+        PipeProfile profile = pipes.get(name);
+        if (profile == null) {
+            profile = pipes.computeIfAbsent(name, PipeProfile::new);
+        }
+        profile.record(nanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Profile of '").append(script).append("', executions: ").append(getExecutions());
+        for (ElementProfile element : getElements()) {
+            sb.append("\n  ").append(element);
+        }
+        for (PipeProfile pipe : getPipes().values()) {
+            sb.append("\n  ").append(pipe);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Profile of an element.
+     */
+    public static final class ElementProfile {
+        // bucket 0: 0 iterations, bucket n: [2^(n-1), 2^n) iterations.
+        private static final int HISTOGRAM_BUCKETS = 33;
+        private final String type;
+        private final int line;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLongArray branches;
+        private final AtomicLongArray iterations;
+
+        ElementProfile(IElement element, int line) {
+            this.line = line;
+            int branchCount = 0;
+            if (element instanceof IfElement) {
+                type = "if";
+                branchCount = 2;
+            } else if (element instanceof GuardElement) {
+                type = "guard";
+                branchCount = 2;
+            } else if (element instanceof SwitchElement) {
+                type = "switch";
+                branchCount = ((SwitchElement) element).getCaseBranches().size() + 1;
+            } else if (element instanceof ChooseElement) {
+                type = "choose";
+                branchCount = ((ChooseElement) element).getWhenBranches().size() + 1;
+            } else if (element instanceof ForLoopElement) {
+                type = "for";
+            } else if (element instanceof VarDefineElement) {
+                type = "var";
+            } else if (element instanceof CheckElement) {
+                type = "check";
+            } else if (element instanceof TextElement) {
+                type = "text";
+            } else {
+                type = element.getClass().getSimpleName();
+            }
+            this.branches = branchCount > 0 ? new AtomicLongArray(branchCount) : null;
+            this.iterations = element instanceof ForLoopElement ? new AtomicLongArray(HISTOGRAM_BUCKETS) : null;
+        }
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+        }
+
+        void recordBranch(int branch) {
+            if (branches != null && branch >= 0 && branch < branches.length()) {
+                branches.incrementAndGet(branch);
+            }
+        }
+
+        void recordIterations(int n) {
+            if (iterations != null) {
+                iterations.incrementAndGet(32 - Integer.numberOfLeadingZeros(n));
+            }
+        }
+
+        /**
+         * Returns the element type e.g. {@code if}, {@code for}, {@code text}.
+         *
+         * @return element type
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the source line of the element.
+         *
+         * @return line number or -1 if unknown
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the cumulative time of the element, include the nested elements.
+         *
+         * @return nanoseconds
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        /**
+         * Returns the hit count of each branch.
+         *
+         * @return hit counts indexed by the branch or empty array if the element has no branches
+         * @see RabbitScriptEvaluator#onBranch(IElement, int)
+         */
+        public long[] getBranchHits() {
+            return toArray(branches);
+        }
+
+        /**
+         * Returns the histogram of the loop iterations, index 0 is the count of the loops without iteration,
+         * index n is the count of the loops which iterations in {@code [2^(n-1), 2^n)}.
+         *
+         * @return histogram or empty array if the element is not a loop
+         */
+        public long[] getIterationHistogram() {
+            return toArray(iterations);
+        }
+
+        private static long[] toArray(AtomicLongArray array) {
+            if (array == null) {
+                return new long[0];
+            }
+            long[] values = new long[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = array.get(i);
+            }
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("#").append(type).append(" at line ").append(line)
+                    .append(": count=").append(getCount())
+                    .append(", nanos=").append(getNanos());
+            if (branches != null) {
+                sb.append(", branches=").append(Arrays.toString(getBranchHits()));
+            }
+            if (iterations != null) {
+                long[] histogram = getIterationHistogram();
+                int last = histogram.length - 1;
+                while (last > 0 && histogram[last] == 0) {
+                    last--;
+                }
+                sb.append(", iterations=").append(Arrays.toString(Arrays.copyOf(histogram, last + 1)));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Profile of a pipe.
+     */
+    public static final class PipeProfile {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        PipeProfile(String name) {
+            this.name = name;
+        }
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "pipe " + name + ": count=" + getCount() + ", nanos=" + getNanos();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h2>Script profiler</h2>
+ * <p>Execute the script with the instrumented evaluator and record the profile by the script name:
+ * the invocation count and the cumulative time of each element keyed by the source line, the branch
+ * hits of {@code #if}, {@code #guard}, {@code #switch} and {@code #choose}, the iteration histogram
+ * of {@code #for} and the time of each pipe.</p>
+ * <p>Profiling is opt-in, the scripts executed by {@link com.github.chengyuxing.common.script.RabbitScriptEngine RabbitScriptEngine}
+ * are not instrumented, the profiler is thread-safe.</p>
+ */
+public final class ScriptProfiler {
+    private final Map<String, ScriptProfile> profiles = new ConcurrentHashMap<>();
+    private final ProfileSink sink;
+
+    /**
+     * Construct a new ScriptProfiler.
+     *
+     * @param sink receiver of the profiles when {@link #flush()}
+     */
+    public ScriptProfiler(@NotNull ProfileSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Execute the script and record the profile.
+     *
+     * @param script  script name
+     * @param ast     script ast
+     * @param context context
+     * @return evaluated result
+     */
+    public EvalResult execute(@NotNull String script, @NotNull ScriptAst ast, @NotNull EvalContext context) {
+        ScriptProfile profile = profiles.computeIfAbsent(script, ScriptProfile::new);
+        ProfilingEvaluator evaluator = new ProfilingEvaluator(context, ast, profile);
+        context.setProfile(profile);
+        try {
+            EvalResult result = evaluator.execute(ast);
+            profile.recordExecution();
+            return result;
+        } finally {
+            context.setProfile(null);
+            evaluator.release();
+        }
+    }
+
+    public @Nullable ScriptProfile getProfile(String script) {
+        return profiles.get(script);
+    }
+
+    public @NotNull Collection<ScriptProfile> getProfiles() {
+        return new ArrayList<>(profiles.values());
+    }
+
+    /**
+     * Send all profiles to the sink.
+     */
+    public void flush() {
+        for (ScriptProfile profile : profiles.values()) {
+            sink.accept(profile);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.CleanStringJoiner;
+import com.github.chengyuxing.common.script.exception.CheckViolationException;
+import com.github.chengyuxing.common.script.exception.GuardViolationException;
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
+import com.github.chengyuxing.common.script.lang.Comparators;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.tuple.Pair;
+import com.github.chengyuxing.common.util.ValueUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static com.github.chengyuxing.common.util.StringUtils.NEW_LINE;
+
+/**
+ * Runtime support of the {@link com.github.chengyuxing.common.script.ast.CompiledScript CompiledScript}
+ * generated by {@link ScriptSourceGenerator}, one instance per execution.
+ * <p>The operations are the same as {@link RabbitScriptEvaluator} does for each element,
+ * the {@code #for} loop is always rendered sequentially.</p>
+ */
+public final class ScriptRuntime {
+    private final EvalContext ctx;
+    private final ExecutionBudget budget;
+    private final CleanStringJoiner sql = new CleanStringJoiner(NEW_LINE);
+    private final Map<String, Object> usedVars = new HashMap<>();
+    private final List<Object> params = new ArrayList<>();
+    private long varSeq = 0;
+
+    public ScriptRuntime(@NotNull EvalContext ctx) {
+        this.ctx = ctx;
+        this.budget = ctx.startBudget();
+    }
+
+    public Object var(List<String> keys) {
+        return ctx.resolveArg(keys);
+    }
+
+    public Object pipe(Object value, String name, Object... params) {
+        IPipe<?> pipe = ctx.getPipeRegistry().get(name);
+        if (pipe == null) {
+            throw new PipeNotFoundException("Cannot find pipe '" + name + "'");
+        }
+        if (pipe.isExpensive() && pipe.isDeterministic()) {
+            return ctx.memoizePipe(pipe, value, params);
+        }
+        return pipe.transform(value, params);
+    }
+
+    public boolean compare(Object a, String op, Object b) {
+        return Comparators.compare(a, op, b);
+    }
+
+    /**
+     * Same as the condition which only has a value e.g. {@code #if :enabled}.
+     *
+     * @param value value
+     * @return true if the value is true or not blank
+     */
+    public boolean test(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return !Comparators.compare(value, "=", "");
+    }
+
+    public void check(boolean violated, String message) {
+        if (violated) {
+            throw new CheckViolationException(message);
+        }
+    }
+
+    public void guard(boolean ok, String message) {
+        if (!ok) {
+            throw new GuardViolationException(message);
+        }
+    }
+
+    public Iterator<?> iterate(Object value) {
+        return ValueUtils.asIterable(value).iterator();
+    }
+
+    public void startIteration() {
+        if (budget != null) {
+            budget.countIteration();
+        }
+        ctx.pushScope();
+    }
+
+    public void pushScope() {
+        ctx.pushScope();
+    }
+
+    public void popScope() {
+        ctx.popScope();
+    }
+
+    public void define(String name, Object value) {
+        ctx.bindScope(name, new VarMeta(name, value, varSeq++));
+    }
+
+    public void text(String text) {
+        Pair<String, Map<String, Object>> result = ctx.formatScopePlainText(text, params);
+        ctx.collectUsedVars(usedVars, result.getItem2());
+        if (budget != null) {
+            budget.countOutput(result.getItem1().length() + NEW_LINE.length());
+        }
+        sql.add(result.getItem1());
+    }
+
+    public EvalResult result() {
+        ctx.clearInputValues();
+        Map<String, Object> vars = usedVars.isEmpty() ? Collections.emptyMap() : new HashMap<>(usedVars);
+        List<Object> values = params.isEmpty() ? Collections.emptyList() : new ArrayList<>(params);
+        return new EvalResult(sql.toString(), vars, values);
+    }
+}
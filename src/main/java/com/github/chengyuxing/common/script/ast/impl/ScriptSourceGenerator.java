@@ -0,0 +1,422 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.IElement;
+import com.github.chengyuxing.common.script.ast.IExpr;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.lang.ForContextProperty;
+import com.github.chengyuxing.common.tuple.Pair;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <h2>Java source generator of the compiled script</h2>
+ * <p>Generate the {@link com.github.chengyuxing.common.script.ast.CompiledScript CompiledScript} class
+ * from the {@link ScriptAst}, the elements are translated into the straight-line {@code if}/{@code for}
+ * code over {@link ScriptRuntime}, so the script is neither parsed nor interpreted at runtime.</p>
+ * <p>The generator can be executed at build time by the {@code exec-maven-plugin} e.g.</p>
+ * <blockquote><pre>
+ * &lt;mainClass&gt;com.github.chengyuxing.common.script.ast.impl.ScriptSourceGenerator&lt;/mainClass&gt;
+ * &lt;arguments&gt;
+ *     &lt;argument&gt;${project.basedir}/src/main/resources/scripts&lt;/argument&gt;
+ *     &lt;argument&gt;${project.build.directory}/generated-sources/rabbit&lt;/argument&gt;
+ *     &lt;argument&gt;com.example.scripts&lt;/argument&gt;
+ * &lt;/arguments&gt;
+ * </pre></blockquote>
+ * <p>The custom pipes are resolved by the context at runtime as the interpreted script.</p>
+ */
+public final class ScriptSourceGenerator {
+    private static final String INDENT = "    ";
+    private final String packageName;
+    private final String className;
+    private final StringBuilder body = new StringBuilder();
+    private final StringBuilder fields = new StringBuilder();
+    private final Map<List<String>, String> keyFields = new HashMap<>();
+    private final Map<Object, String> constFields = new HashMap<>();
+    private int depth;
+    private int localSeq;
+
+    private ScriptSourceGenerator(String packageName, String className) {
+        this.packageName = packageName;
+        this.className = className;
+    }
+
+    /**
+     * Generate the java source of the compiled script class.
+     *
+     * @param ast         script ast
+     * @param packageName package name of the class, empty for the default package
+     * @param className   simple class name
+     * @return java source
+     * @throws IllegalArgumentException if the ast contains the unsupported node or constant value
+     */
+    public static String generate(@NotNull ScriptAst ast, @NotNull String packageName, @NotNull String className) {
+        ScriptSourceGenerator generator = new ScriptSourceGenerator(packageName, className);
+        return generator.generate(ast);
+    }
+
+    /**
+     * Generate the compiled script classes of the script files.
+     * <p>Usage: {@code <script dir> <output dir> <package> [file extension, default .txt]}, each script file
+     * is generated to the class which named by the upper camel case of the file name
+     * e.g. {@code user-query.sql} -&gt; {@code UserQuery}.</p>
+     *
+     * @param args arguments
+     * @throws IOException if failed to read the scripts or write the sources
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ScriptSourceGenerator <script dir> <output dir> <package> [file extension]");
+            System.exit(1);
+        }
+        Path scriptDir = Paths.get(args[0]);
+        String packageName = args[2];
+        Path outputDir = Paths.get(args[1]).resolve(packageName.replace('.', '/'));
+        String extension = args.length > 3 ? args[3] : ".txt";
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        List<Path> scripts;
+        try (Stream<Path> s = Files.walk(scriptDir)) {
+            scripts = s.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(extension))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        Files.createDirectories(outputDir);
+        for (Path script : scripts) {
+            String fileName = script.getFileName().toString();
+            String className = toClassName(fileName.substring(0, fileName.length() - extension.length()));
+            ScriptAst ast = engine.compile(new String(Files.readAllBytes(script), StandardCharsets.UTF_8));
+            String source = generate(ast, packageName, className);
+            Files.write(outputDir.resolve(className + ".java"), source.getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println(scripts.size() + " scripts generated to " + outputDir);
+    }
+
+    static String toClassName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean upper = true;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = true;
+            }
+        }
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+
+    private String generate(ScriptAst ast) {
+        List<IElement> elements = ast.getElements();
+        // each top-level element is a method to keep the methods small.
+        StringBuilder methods = new StringBuilder();
+        for (int i = 0; i < elements.size(); i++) {
+            body.setLength(0);
+            depth = 2;
+            writeElement(elements.get(i));
+            methods.append('\n')
+                    .append(INDENT).append("private static void e").append(i).append("(ScriptRuntime rt) {\n")
+                    .append(body)
+                    .append(INDENT).append("}\n");
+        }
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import com.github.chengyuxing.common.script.ast.CompiledScript;\n")
+                .append("import com.github.chengyuxing.common.script.ast.impl.EvalContext;\n")
+                .append("import com.github.chengyuxing.common.script.ast.impl.EvalResult;\n")
+                .append("import com.github.chengyuxing.common.script.ast.impl.ScriptRuntime;\n\n")
+                .append("import java.util.Arrays;\n")
+                .append("import java.util.Collections;\n")
+                .append("import java.util.Iterator;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n * Generated by ScriptSourceGenerator, do not edit.\n */\n")
+                .append("public final class ").append(className).append(" implements CompiledScript {\n")
+                .append(fields)
+                .append('\n')
+                .append(INDENT).append("@Override\n")
+                .append(INDENT).append("public EvalResult execute(EvalContext context) {\n")
+                .append(INDENT).append(INDENT).append("ScriptRuntime rt = new ScriptRuntime(context);\n");
+        for (int i = 0; i < elements.size(); i++) {
+            sb.append(INDENT).append(INDENT).append("e").append(i).append("(rt);\n");
+        }
+        sb.append(INDENT).append(INDENT).append("return rt.result();\n")
+                .append(INDENT).append("}\n")
+                .append(methods)
+                .append("}\n");
+        return sb.toString();
+    }
+
+    private void line(String code) {
+        for (int i = 0; i < depth; i++) {
+            body.append(INDENT);
+        }
+        body.append(code).append('\n');
+    }
+
+    private void writeBlock(List<IElement> block) {
+        // the scope of the empty block is unobservable.
+        if (block.isEmpty()) {
+            return;
+        }
+        line("rt.pushScope();");
+        writeElements(block);
+        line("rt.popScope();");
+    }
+
+    private void writeElements(List<IElement> elements) {
+        for (IElement element : elements) {
+            writeElement(element);
+        }
+    }
+
+    private void writeElement(IElement element) {
+        if (element instanceof TextElement) {
+            line("rt.text(" + literal(((TextElement) element).getText()) + ");");
+        } else if (element instanceof IfElement) {
+            IfElement e = (IfElement) element;
+            line("if (" + condition(e.getExpr()) + ") {");
+            depth++;
+            writeBlock(e.getThenBlock());
+            depth--;
+            if (!e.getElseBlock().isEmpty()) {
+                line("} else {");
+                depth++;
+                writeBlock(e.getElseBlock());
+                depth--;
+            }
+            line("}");
+        } else if (element instanceof ForLoopElement) {
+            writeForLoop((ForLoopElement) element);
+        } else if (element instanceof VarDefineElement) {
+            VarDefineElement e = (VarDefineElement) element;
+            line("rt.define(" + literal(e.getName()) + ", " + value(e.getValueExpr()) + ");");
+        } else if (element instanceof CheckElement) {
+            CheckElement e = (CheckElement) element;
+            line("rt.check(" + condition(e.getExpr()) + ", " + literal(e.getMessage()) + ");");
+        } else if (element instanceof GuardElement) {
+            GuardElement e = (GuardElement) element;
+            line("rt.guard(" + condition(e.getExpr()) + ", " + literal(e.getMessage()) + ");");
+            writeBlock(e.getThenBlock());
+        } else if (element instanceof SwitchElement) {
+            SwitchElement e = (SwitchElement) element;
+            String switchValue = "s" + localSeq++;
+            line("Object " + switchValue + " = " + value(e.getValueExpr()) + ";");
+            String keyword = "if";
+            for (SwitchCaseBranchElement branch : e.getCaseBranches()) {
+                StringJoiner cases = new StringJoiner(" || ");
+                for (ValueExpr caseValue : branch.getValueExpr()) {
+                    cases.add("rt.compare(" + switchValue + ", \"=\", " + value(caseValue) + ")");
+                }
+                line(keyword + " (" + (cases.length() == 0 ? "false" : cases.toString()) + ") {");
+                depth++;
+                writeBlock(branch.getThenBlock());
+                depth--;
+                keyword = "} else if";
+            }
+            writeDefaultBranch(e.getCaseBranches().isEmpty(), e.getDefaultBranch());
+        } else if (element instanceof ChooseElement) {
+            ChooseElement e = (ChooseElement) element;
+            String keyword = "if";
+            for (ChooseWhenBranchElement branch : e.getWhenBranches()) {
+                line(keyword + " (" + condition(branch.getExpr()) + ") {");
+                depth++;
+                writeBlock(branch.getThenBlock());
+                depth--;
+                keyword = "} else if";
+            }
+            writeDefaultBranch(e.getWhenBranches().isEmpty(), e.getDefaultBranch());
+        } else {
+            throw new IllegalArgumentException("Unsupported element: " + element.getClass().getName());
+        }
+    }
+
+    private void writeDefaultBranch(boolean noBranches, BranchElement defaultBranch) {
+        if (noBranches || defaultBranch.getThenBlock().isEmpty()) {
+            if (noBranches) {
+                writeBlock(defaultBranch.getThenBlock());
+            } else {
+                line("}");
+            }
+            return;
+        }
+        line("} else {");
+        depth++;
+        writeBlock(defaultBranch.getThenBlock());
+        depth--;
+        line("}");
+    }
+
+    private void writeForLoop(ForLoopElement e) {
+        String value = value(e.getValueExpr());
+        List<IElement> loopBlock = e.getLoopBlock();
+        if (loopBlock.isEmpty()) {
+            line("rt.iterate(" + value + ");");
+            return;
+        }
+        int n = localSeq++;
+        String it = "it" + n;
+        String i = "i" + n;
+        line("Iterator<?> " + it + " = rt.iterate(" + value + ");");
+        line("for (int " + i + " = 0; " + it + ".hasNext(); " + i + "++) {");
+        depth++;
+        line("Object item" + n + " = " + it + ".next();");
+        line("rt.startIteration();");
+        line("rt.define(" + literal(e.getItemName()) + ", item" + n + ");");
+        for (ForContextProperty property : ForContextProperty.values()) {
+            String alias = e.getContextPropertyAlias(property);
+            if (alias == null) {
+                continue;
+            }
+            String propertyValue;
+            switch (property) {
+                case index:
+                    propertyValue = i;
+                    break;
+                case first:
+                    propertyValue = i + " == 0";
+                    break;
+                case last:
+                    propertyValue = "!" + it + ".hasNext()";
+                    break;
+                case odd:
+                    propertyValue = "(" + i + " & 1) == 1";
+                    break;
+                default:
+                    propertyValue = "(" + i + " & 1) == 0";
+                    break;
+            }
+            line("rt.define(" + literal(alias) + ", " + propertyValue + ");");
+        }
+        writeElements(loopBlock);
+        line("rt.popScope();");
+        depth--;
+        line("}");
+    }
+
+    private String condition(IExpr<Boolean> expr) {
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr e = (BinaryExpr) expr;
+            return "rt.compare(" + value(e.getLeft()) + ", " + literal(e.getOp()) + ", " + value(e.getRight()) + ")";
+        }
+        if (expr instanceof LogicExpr) {
+            LogicExpr e = (LogicExpr) expr;
+            String op = Objects.equals(e.getOp(), "&&") ? " && " : " || ";
+            return "(" + condition(e.getLeft()) + op + condition(e.getRight()) + ")";
+        }
+        if (expr instanceof NotExpr) {
+            return "!" + condition(((NotExpr) expr).getExpr());
+        }
+        if (expr instanceof UnaryExpr) {
+            return "rt.test(" + value(((UnaryExpr) expr).getLeft()) + ")";
+        }
+        throw new IllegalArgumentException("Unsupported expression: " + expr.getClass().getName());
+    }
+
+    private String value(ValueExpr expr) {
+        String value;
+        if (expr instanceof ConstExpr) {
+            value = constant(((ConstExpr) expr).getValue());
+        } else if (expr instanceof VarExpr) {
+            value = "rt.var(" + keys(((VarExpr) expr).getKeys()) + ")";
+        } else {
+            throw new IllegalArgumentException("Unsupported value expression: " + expr.getClass().getName());
+        }
+        for (Pair<String, List<ValueExpr>> pipe : expr.getPipes()) {
+            StringBuilder sb = new StringBuilder("rt.pipe(").append(value).append(", ").append(literal(pipe.getItem1()));
+            for (ValueExpr param : pipe.getItem2()) {
+                sb.append(", ").append(value(param));
+            }
+            value = sb.append(')').toString();
+        }
+        return value;
+    }
+
+    private String keys(List<String> keys) {
+        return keyFields.computeIfAbsent(keys, k -> {
+            String name = "K" + keyFields.size();
+            String list = k.size() == 1
+                    ? "Collections.singletonList(" + literal(k.get(0)) + ")"
+                    : "Collections.unmodifiableList(Arrays.asList(" + k.stream().map(ScriptSourceGenerator::literal).collect(Collectors.joining(", ")) + "))";
+            fields.append(INDENT).append("private static final List<String> ").append(name).append(" = ").append(list).append(";\n");
+            return name;
+        });
+    }
+
+    private String constant(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return literal((String) value);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "Boolean.TRUE" : "Boolean.FALSE";
+        }
+        if (value instanceof Integer) {
+            return "Integer.valueOf(" + value + ")";
+        }
+        if (value instanceof Long) {
+            return "Long.valueOf(" + value + "L)";
+        }
+        if (value instanceof Double) {
+            return "Double.valueOf(Double.longBitsToDouble(" + Double.doubleToRawLongBits((Double) value) + "L))";
+        }
+        if (value instanceof BigDecimal) {
+            return constFields.computeIfAbsent(value, v -> {
+                String name = "C" + constFields.size();
+                fields.append(INDENT).append("private static final java.math.BigDecimal ").append(name)
+                        .append(" = new java.math.BigDecimal(").append(literal(v.toString())).append(");\n");
+                return name;
+            });
+        }
+        throw new IllegalArgumentException("Unsupported constant value type: " + value.getClass().getName());
+    }
+
+    static String literal(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7E) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,356 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.script.ast.IElement;
+import com.github.chengyuxing.common.script.ast.IExpr;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.lang.Comparators;
+import com.github.chengyuxing.common.script.lang.ForContextProperty;
+import com.github.chengyuxing.common.util.StringUtils;
+import com.github.chengyuxing.common.util.ValueUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * Partial evaluator which specializes the script against the known arguments.
+ * <ul>
+ *     <li>The variable {@code :key} of the known arguments is replaced by its value;</li>
+ *     <li>The condition which depends only on the known arguments (without pipes) is evaluated,
+ *     {@code #if}, {@code #choose}, {@code #switch} and {@code #check} are pruned by the result,
+ *     the selected block is spliced into the parent block if it does not define variables directly;</li>
+ *     <li>The raw value holder {@code ${key}} of the known arguments is inlined, the quoted value holder
+ *     {@code ${!key}} is kept to be rendered by the placeholder style of the context at runtime;</li>
+ *     <li>{@code #var} and {@code #for} are kept, the loop is not unrolled.</li>
+ * </ul>
+ * <p>The residual script is equivalent to the original script when it is executed with the rest arguments,
+ * the known arguments are only required at runtime by the kept quoted value holders.</p>
+ */
+public final class ScriptSpecializer {
+    private static final EvalContext CONST_CONTEXT = new EvalContext(Collections.emptyMap());
+    private final Map<String, Object> knownArgs;
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+
+    private ScriptSpecializer(Map<String, Object> knownArgs) {
+        this.knownArgs = knownArgs;
+        this.scopes.push(new HashSet<>());
+    }
+
+    /**
+     * Specialize the script against the known arguments.
+     *
+     * @param ast       script ast
+     * @param knownArgs known arguments
+     * @return residual script ast
+     */
+    public static @NotNull ScriptAst specialize(@NotNull ScriptAst ast, @NotNull Map<String, Object> knownArgs) {
+        if (knownArgs.isEmpty()) {
+            return ast;
+        }
+        ScriptSpecializer specializer = new ScriptSpecializer(knownArgs);
+        List<IElement> elements = new ArrayList<>();
+        specializer.specializeElements(ast.getElements(), elements);
+        return new ScriptAst(Collections.unmodifiableList(elements));
+    }
+
+    private boolean isKnown(String name) {
+        return knownArgs.containsKey(name) && !scopes.peek().contains(name);
+    }
+
+    private void specializeElements(List<IElement> elements, List<IElement> output) {
+        for (IElement element : elements) {
+            specializeElement(element, output);
+        }
+    }
+
+    private List<IElement> specializeBlock(List<IElement> block) {
+        scopes.push(new HashSet<>(scopes.peek()));
+        List<IElement> output = new ArrayList<>();
+        specializeElements(block, output);
+        scopes.pop();
+        return output;
+    }
+
+    /**
+     * Add the selected block to the parent block, the block which defines variables directly
+     * is kept in its own scope.
+     */
+    private void spliceBlock(List<IElement> block, List<IElement> output) {
+        List<IElement> specialized = specializeBlock(block);
+        for (IElement element : specialized) {
+            if (element instanceof VarDefineElement) {
+                output.add(new IfElement(constant(true), specialized, new ArrayList<>()));
+                return;
+            }
+        }
+        output.addAll(specialized);
+    }
+
+    private void specializeElement(IElement element, List<IElement> output) {
+        if (element instanceof TextElement) {
+            output.add(specializeText((TextElement) element));
+        } else if (element instanceof VarDefineElement) {
+            VarDefineElement var = (VarDefineElement) element;
+            output.add(new VarDefineElement(var.getName(), foldValue(var.getValueExpr())));
+            scopes.peek().add(var.getName());
+        } else if (element instanceof IfElement) {
+            IfElement ifElement = (IfElement) element;
+            IExpr<Boolean> expr = foldCondition(ifElement.getExpr());
+            Boolean value = constantValue(expr);
+            if (value == null) {
+                output.add(new IfElement(expr, specializeBlock(ifElement.getThenBlock()), specializeBlock(ifElement.getElseBlock())));
+            } else {
+                spliceBlock(value ? ifElement.getThenBlock() : ifElement.getElseBlock(), output);
+            }
+        } else if (element instanceof ChooseElement) {
+            specializeChoose((ChooseElement) element, output);
+        } else if (element instanceof SwitchElement) {
+            specializeSwitch((SwitchElement) element, output);
+        } else if (element instanceof CheckElement) {
+            CheckElement check = (CheckElement) element;
+            IExpr<Boolean> expr = foldCondition(check.getExpr());
+            if (!Boolean.FALSE.equals(constantValue(expr))) {
+                output.add(new CheckElement(expr, check.getMessage()));
+            }
+        } else if (element instanceof GuardElement) {
+            GuardElement guard = (GuardElement) element;
+            IExpr<Boolean> expr = foldCondition(guard.getExpr());
+            if (Boolean.TRUE.equals(constantValue(expr))) {
+                spliceBlock(guard.getThenBlock(), output);
+            } else {
+                output.add(new GuardElement(expr, specializeBlock(guard.getThenBlock()), guard.getMessage()));
+            }
+        } else if (element instanceof ForLoopElement) {
+            output.add(specializeForLoop((ForLoopElement) element));
+        } else {
+            output.add(element);
+        }
+    }
+
+    private ForLoopElement specializeForLoop(ForLoopElement element) {
+        ForLoopElement forLoop = new ForLoopElement(element.getItemName(), foldValue(element.getValueExpr()));
+        scopes.push(new HashSet<>(scopes.peek()));
+        scopes.peek().add(element.getItemName());
+        for (ForContextProperty property : ForContextProperty.values()) {
+            String alias = element.getContextPropertyAlias(property);
+            if (alias != null) {
+                forLoop.setContextPropertyAlias(property, alias);
+                scopes.peek().add(alias);
+            }
+        }
+        List<IElement> body = new ArrayList<>();
+        specializeElements(element.getLoopBlock(), body);
+        scopes.pop();
+        forLoop.setLoopBlock(body);
+        return forLoop;
+    }
+
+    private void specializeChoose(ChooseElement element, List<IElement> output) {
+        List<ChooseWhenBranchElement> whens = new ArrayList<>();
+        for (ChooseWhenBranchElement when : element.getWhenBranches()) {
+            IExpr<Boolean> expr = foldCondition(when.getExpr());
+            Boolean value = constantValue(expr);
+            if (value == null) {
+                whens.add(new ChooseWhenBranchElement(expr, specializeBlock(when.getThenBlock())));
+            } else if (value) {
+                // the rest branches are unreachable, the matched branch becomes the default branch.
+                if (whens.isEmpty()) {
+                    spliceBlock(when.getThenBlock(), output);
+                } else {
+                    output.add(new ChooseElement(whens, branch(specializeBlock(when.getThenBlock()))));
+                }
+                return;
+            }
+        }
+        List<IElement> defaultBlock = element.getDefaultBranch().getThenBlock();
+        if (whens.isEmpty()) {
+            spliceBlock(defaultBlock, output);
+        } else {
+            output.add(new ChooseElement(whens, branch(specializeBlock(defaultBlock))));
+        }
+    }
+
+    private void specializeSwitch(SwitchElement element, List<IElement> output) {
+        ValueExpr source = foldValue(element.getValueExpr());
+        boolean constSource = isConstant(source);
+        List<SwitchCaseBranchElement> cases = new ArrayList<>();
+        for (SwitchCaseBranchElement caseBranch : element.getCaseBranches()) {
+            List<ValueExpr> values = new ArrayList<>();
+            for (ValueExpr expr : caseBranch.getValueExpr()) {
+                values.add(foldValue(expr));
+            }
+            cases.add(new SwitchCaseBranchElement(values, caseBranch.getThenBlock()));
+        }
+        List<IElement> defaultBlock = element.getDefaultBranch().getThenBlock();
+        if (constSource) {
+            Object switchValue = ((ConstExpr) source).getValue();
+            List<IElement> matched = matchCase(switchValue, cases, defaultBlock);
+            if (matched != null) {
+                spliceBlock(matched, output);
+                return;
+            }
+        }
+        List<SwitchCaseBranchElement> specializedCases = new ArrayList<>(cases.size());
+        for (SwitchCaseBranchElement caseBranch : cases) {
+            specializedCases.add(new SwitchCaseBranchElement(caseBranch.getValueExpr(), specializeBlock(caseBranch.getThenBlock())));
+        }
+        output.add(new SwitchElement(source, specializedCases, branch(specializeBlock(defaultBlock))));
+    }
+
+    /**
+     * Find the matched block of the constant switch value.
+     *
+     * @return matched block or null if it cannot be decided at compile time
+     */
+    private static List<IElement> matchCase(Object switchValue, List<SwitchCaseBranchElement> cases, List<IElement> defaultBlock) {
+        try {
+            for (SwitchCaseBranchElement caseBranch : cases) {
+                for (ValueExpr expr : caseBranch.getValueExpr()) {
+                    if (!isConstant(expr)) {
+                        return null;
+                    }
+                    if (Comparators.compare(switchValue, "=", ((ConstExpr) expr).getValue())) {
+                        return caseBranch.getThenBlock();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return defaultBlock;
+    }
+
+    private static BranchElement branch(List<IElement> block) {
+        BranchElement branch = new BranchElement();
+        branch.setThenBlock(block);
+        return branch;
+    }
+
+    private static IExpr<Boolean> constant(boolean value) {
+        return new UnaryExpr(new ConstExpr(value));
+    }
+
+    private static boolean isConstant(ValueExpr expr) {
+        return expr instanceof ConstExpr && !expr.hasPipes();
+    }
+
+    private static boolean isConstant(IExpr<Boolean> expr) {
+        if (expr instanceof UnaryExpr) {
+            return isConstant(((UnaryExpr) expr).getLeft());
+        }
+        if (expr instanceof BinaryExpr) {
+            return isConstant(((BinaryExpr) expr).getLeft()) && isConstant(((BinaryExpr) expr).getRight());
+        }
+        if (expr instanceof NotExpr) {
+            return isConstant(((NotExpr) expr).getExpr());
+        }
+        if (expr instanceof LogicExpr) {
+            return isConstant(((LogicExpr) expr).getLeft()) && isConstant(((LogicExpr) expr).getRight());
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the constant condition.
+     *
+     * @return value or null if the condition is not constant or fails to evaluate,
+     * the failure will be reported at runtime
+     */
+    private static Boolean constantValue(IExpr<Boolean> expr) {
+        if (!isConstant(expr)) {
+            return null;
+        }
+        try {
+            return expr.eval(CONST_CONTEXT);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private IExpr<Boolean> foldCondition(IExpr<Boolean> expr) {
+        if (expr instanceof LogicExpr) {
+            LogicExpr logic = (LogicExpr) expr;
+            IExpr<Boolean> left = foldCondition(logic.getLeft());
+            IExpr<Boolean> right = foldCondition(logic.getRight());
+            Boolean value = constantValue(left);
+            if (value != null) {
+                boolean and = Objects.equals(logic.getOp(), "&&");
+                // false && x -> false, true || x -> true, otherwise x.
+                if (value != and) {
+                    return constant(value);
+                }
+                return right;
+            }
+            return new LogicExpr(left, logic.getOp(), right);
+        }
+        if (expr instanceof NotExpr) {
+            IExpr<Boolean> inner = foldCondition(((NotExpr) expr).getExpr());
+            Boolean value = constantValue(inner);
+            return value != null ? constant(!value) : new NotExpr(inner);
+        }
+        if (expr instanceof UnaryExpr) {
+            return new UnaryExpr(foldValue(((UnaryExpr) expr).getLeft()));
+        }
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return new BinaryExpr(foldValue(binary.getLeft()), binary.getOp(), foldValue(binary.getRight()));
+        }
+        return expr;
+    }
+
+    private ValueExpr foldValue(ValueExpr expr) {
+        if (expr instanceof VarExpr) {
+            List<String> keys = ((VarExpr) expr).getKeys();
+            if (isKnown(keys.get(0))) {
+                ConstExpr constExpr = new ConstExpr(ValueUtils.accessDeepValue(knownArgs, keys));
+                constExpr.copyPipes(expr);
+                return constExpr;
+            }
+        }
+        return expr;
+    }
+
+    private TextElement specializeText(TextElement element) {
+        String text = element.getText();
+        if (!text.contains("${")) {
+            return element;
+        }
+        Matcher m = StringUtils.FMT.getPattern().matcher(text);
+        StringBuilder sb = null;
+        int last = 0;
+        while (m.find()) {
+            String key = m.group("key");
+            if (key.charAt(0) == '!') {
+                continue;
+            }
+            List<String> keys = ValueUtils.decodeKeyPathExpression(key);
+            if (!isKnown(keys.get(0))) {
+                continue;
+            }
+            String value = formatRawValue(ValueUtils.accessDeepValue(knownArgs, keys));
+            // the nested holder would be formatted by the scope variables at runtime.
+            if (value.contains("${")) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(text.length());
+            }
+            sb.append(text, last, m.start()).append(value);
+            last = m.end();
+        }
+        if (sb == null) {
+            return element;
+        }
+        return new TextElement(sb.append(text, last, text.length()).toString());
+    }
+
+    private static String formatRawValue(Object value) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Object v : ValueUtils.asIterable(value)) {
+            if (v != null) {
+                joiner.add(v.toString());
+            }
+        }
+        return joiner.toString();
+    }
+}
@@ -3,17 +3,71 @@ package com.github.chengyuxing.common.script.ast.impl;
 import com.github.chengyuxing.common.script.ast.IElement;
 import com.github.chengyuxing.common.script.ast.IElementVisitor;
 
+import com.github.chengyuxing.common.script.lang.Comparators;
+
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SwitchElement implements IElement {
     private final ValueExpr valueExpr;
     private final List<SwitchCaseBranchElement> caseBranches;
     private final BranchElement defaultBranch;
+    // case branch indexes keyed by the string of the constant case values, null if any case value is not constant.
+    private final Map<String, Integer> caseTable;
 
     public SwitchElement(ValueExpr valueExpr, List<SwitchCaseBranchElement> caseBranches, BranchElement defaultBranch) {
         this.valueExpr = valueExpr;
         this.caseBranches = caseBranches;
         this.defaultBranch = defaultBranch;
+        this.caseTable = createCaseTable(caseBranches);
+    }
+
+    /**
+     * Create the lookup table of the constant case values, for the non-blank switch value
+     * {@link Comparators#equals(Object, Object)} is the string equality of the non-null values,
+     * so the first case of the same string wins as the linear matching.
+     *
+     * @param caseBranches case branches
+     * @return lookup table or null if any case value is not constant
+     */
+    private static Map<String, Integer> createCaseTable(List<SwitchCaseBranchElement> caseBranches) {
+        Map<String, Integer> table = new HashMap<>();
+        for (int i = 0; i < caseBranches.size(); i++) {
+            for (ValueExpr expr : caseBranches.get(i).getValueExpr()) {
+                if (!(expr instanceof ConstExpr) || expr.hasPipes()) {
+                    return null;
+                }
+                Object value = ((ConstExpr) expr).getValue();
+                if (value != null) {
+                    table.putIfAbsent(value.toString(), i);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Find the matched case branch of the switch value by the lookup table.
+     *
+     * @param switchValue switch value
+     * @param context     context to evaluate the case values if the table is not available
+     * @return index of the matched case branch or -1
+     */
+    int matchCase(Object switchValue, EvalContext context) {
+        if (caseTable != null && !Comparators.isBlank(switchValue)) {
+            Integer idx = caseTable.get(switchValue.toString());
+            return idx != null ? idx : -1;
+        }
+        for (int i = 0; i < caseBranches.size(); i++) {
+            for (ValueExpr expr : caseBranches.get(i).getValueExpr()) {
+                Object caseValue = expr.eval(context);
+                if (Comparators.compare(switchValue, "=", caseValue)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
     }
 
     public ValueExpr getValueExpr() {
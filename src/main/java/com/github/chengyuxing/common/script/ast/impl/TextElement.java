@@ -5,15 +5,26 @@ import com.github.chengyuxing.common.script.ast.IElementVisitor;
 
 public class TextElement implements IElement {
     private final String text;
+    private final TextTemplate template;
 
     public TextElement(String text) {
         this.text = text;
+        this.template = TextTemplate.compile(text);
     }
 
     public String getText() {
         return text;
     }
 
+    /**
+     * Returns the decoded value holders of the text.
+     *
+     * @return template or null if the text has no value holder
+     */
+    TextTemplate getTemplate() {
+        return template;
+    }
+
     @Override
     public <R> R accept(IElementVisitor<R> visitor) {
         return visitor.visitPlainText(this);
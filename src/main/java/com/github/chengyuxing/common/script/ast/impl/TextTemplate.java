@@ -0,0 +1,170 @@
+package com.github.chengyuxing.common.script.ast.impl;
+
+import com.github.chengyuxing.common.util.StringUtils;
+import com.github.chengyuxing.common.util.ValueUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Value holders {@code ${key}} of the plain text decoded at compile time.
+ * <p>The text is rendered by the same rules as {@link StringUtils#FMT}: the holder is resolved
+ * from the current scope first and then the input arguments, the unresolved holder is kept as it is,
+ * without the pattern matching and the scope variables map of each execution.</p>
+ */
+final class TextTemplate {
+    // the formatter restores this char of the whole text to '$', such text is always formatted by the formatter.
+    @SuppressWarnings("UnnecessaryUnicodeEscape")
+    private static final char FORMATTER_TEMP_CHAR = '\u0c32';
+    private final String[] literals;
+    private final String[] holders;
+    private final String[] names;
+    private final List<String>[] keys;
+    private final List<String>[] paths;
+    private final boolean[] quoted;
+    private final int length;
+    private final boolean singlePass;
+
+    @SuppressWarnings("unchecked")
+    private TextTemplate(String text, List<Integer> bounds, List<String> holderKeys) {
+        int n = holderKeys.size();
+        this.literals = new String[n + 1];
+        this.holders = new String[n];
+        this.names = new String[n];
+        this.keys = new List[n];
+        this.paths = new List[n];
+        this.quoted = new boolean[n];
+        this.length = text.length();
+        this.singlePass = text.indexOf(FORMATTER_TEMP_CHAR) == -1;
+        int last = 0;
+        for (int i = 0; i < n; i++) {
+            int start = bounds.get(2 * i);
+            int end = bounds.get(2 * i + 1);
+            literals[i] = text.substring(last, start);
+            holders[i] = text.substring(start, end);
+            String key = holderKeys.get(i);
+            quoted[i] = key.charAt(0) == '!';
+            keys[i] = ValueUtils.decodeKeyPathExpression(quoted[i] ? key.substring(1) : key);
+            names[i] = keys[i].get(0);
+            paths[i] = keys[i].subList(1, keys[i].size());
+            last = end;
+        }
+        literals[n] = text.substring(last);
+    }
+
+    /**
+     * Decode the value holders of the text.
+     *
+     * @param text plain text
+     * @return template or null if the text is never changed by the formatter
+     */
+    static TextTemplate compile(String text) {
+        if (!text.contains("${")) {
+            return null;
+        }
+        Matcher m = StringUtils.FMT.getPattern().matcher(text);
+        List<Integer> bounds = new ArrayList<>();
+        List<String> holderKeys = new ArrayList<>();
+        while (m.find()) {
+            bounds.add(m.start());
+            bounds.add(m.end());
+            holderKeys.add(m.group("key"));
+        }
+        if (holderKeys.isEmpty() && text.indexOf(FORMATTER_TEMP_CHAR) == -1) {
+            return null;
+        }
+        return new TextTemplate(text, bounds, holderKeys);
+    }
+
+    /**
+     * Render the text with the current scope and the input arguments of the context.
+     *
+     * @param ctx    context
+     * @param scope  current scope
+     * @param inputs input arguments
+     * @param buffer buffer to render the text
+     * @return true if the text is rendered into the buffer, false if the text must be formatted by the formatter,
+     * e.g. a value contains the value holder which is formatted again
+     */
+    boolean render(EvalContext ctx, Map<String, VarMeta> scope, Map<String, Object> inputs, StringBuilder buffer) {
+        if (!singlePass) {
+            return false;
+        }
+        buffer.setLength(0);
+        buffer.ensureCapacity(length);
+        for (int i = 0; i < holders.length; i++) {
+            buffer.append(literals[i]);
+            Object value;
+            VarMeta var = scope.get(names[i]);
+            if (var != null) {
+                value = paths[i].isEmpty() ? var.getValue() : ValueUtils.accessDeepValue(var.getValue(), paths[i]);
+            } else if (inputs.containsKey(names[i])) {
+                value = ctx.getInputValue(keys[i]);
+            } else {
+                buffer.append(holders[i]);
+                continue;
+            }
+            int start = buffer.length();
+            appendValue(buffer, value, quoted[i]);
+            if (!isFinal(buffer, start)) {
+                return false;
+            }
+        }
+        buffer.append(literals[holders.length]);
+        return true;
+    }
+
+    private static void appendValue(StringBuilder buffer, Object value, boolean quoted) {
+        if (value == null) {
+            return;
+        }
+        if (!(value instanceof Iterable) && !value.getClass().isArray()) {
+            appendElement(buffer, value, quoted);
+            return;
+        }
+        boolean first = true;
+        for (Object v : ValueUtils.asIterable(value)) {
+            if (v != null) {
+                if (!first) {
+                    buffer.append(", ");
+                }
+                appendElement(buffer, v, quoted);
+                first = false;
+            }
+        }
+    }
+
+    private static void appendElement(StringBuilder buffer, Object value, boolean quoted) {
+        if (quoted) {
+            buffer.append('\'');
+        }
+        if (value instanceof Integer) {
+            buffer.append((int) (Integer) value);
+        } else if (value instanceof Long) {
+            buffer.append((long) (Long) value);
+        } else {
+            buffer.append(value.toString());
+        }
+        if (quoted) {
+            buffer.append('\'');
+        }
+    }
+
+    /**
+     * Check the value which appended from the start does not make a new value holder.
+     */
+    private static boolean isFinal(StringBuilder buffer, int start) {
+        if (start > 0 && start < buffer.length() && buffer.charAt(start) == '{' && buffer.charAt(start - 1) == '$') {
+            return false;
+        }
+        for (int i = start, j = buffer.length(); i < j; i++) {
+            char c = buffer.charAt(i);
+            if (c == '$' || c == FORMATTER_TEMP_CHAR) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
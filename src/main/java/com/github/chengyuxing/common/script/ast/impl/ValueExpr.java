@@ -1,45 +1,131 @@
 package com.github.chengyuxing.common.script.ast.impl;
 
 import com.github.chengyuxing.common.script.ast.IExpr;
-import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
-import com.github.chengyuxing.common.script.pipe.BuiltinPipes;
-import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.script.pipe.PipeRegistry;
 import com.github.chengyuxing.common.tuple.Pair;
+import org.jetbrains.annotations.Nullable;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 public abstract class ValueExpr implements IExpr<Object> {
-    private static final Map<String, IPipe<?>> BUILTIN_PIPES = BuiltinPipes.getAll();
+    private static final PipeCall[] NO_PIPES = new PipeCall[0];
+    private static final Object NOT_FOLDED = new Object();
     private List<Pair<String, List<ValueExpr>>> pipes;
+    private PipeCall[] pipeCalls = NO_PIPES;
+    // the piped value evaluated at compile time, used when the context does not declare the pipes.
+    private Object foldedValue = NOT_FOLDED;
 
     public List<Pair<String, List<ValueExpr>>> getPipes() {
         return pipes != null ? pipes : Collections.emptyList();
     }
 
+    public boolean hasPipes() {
+        return pipeCalls.length > 0;
+    }
+
     protected Object getPipedValue(Object value, EvalContext context) {
+        if (foldedValue != NOT_FOLDED && isLinked(context)) {
+            return foldedValue;
+        }
         Object pipedValue = value;
-        for (Pair<String, List<ValueExpr>> pipe : getPipes()) {
-            Object[] myParams = new Object[pipe.getItem2().size()];
-            for (int i = 0; i < pipe.getItem2().size(); i++) {
-                ValueExpr valueExpr = pipe.getItem2().get(i);
-                myParams[i] = valueExpr.eval(context);
+        for (PipeCall pipeCall : pipeCalls) {
+            pipedValue = pipeCall.transform(pipedValue, context);
+        }
+        return pipedValue;
+    }
+
+    private boolean isLinked(EvalContext context) {
+        for (PipeCall pipeCall : pipeCalls) {
+            if (!pipeCall.isLinked(context)) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            String pipeName = pipe.getItem1();
-            if (context.getPipes().containsKey(pipeName)) {
-                pipedValue = context.getPipes().get(pipeName).transform(pipedValue, myParams);
-            } else if (BUILTIN_PIPES.containsKey(pipeName)) {
-                pipedValue = BUILTIN_PIPES.get(pipeName).transform(pipedValue, myParams);
-            } else {
-                throw new PipeNotFoundException("Cannot find pipe '" + pipe + "'");
+    /**
+     * Evaluate the pure pipes over the constant value at compile time,
+     * the value is not folded if any pipe fails, the failure will be reported at runtime.
+     * <p>Only the immutable result is folded, it is shared by all executions on all threads,
+     * the mutable result e.g. the array of {@code split} is computed by each execution.</p>
+     *
+     * @param value constant value
+     */
+    void foldPipes(Object value) {
+        if (pipeCalls.length == 0) {
+            return;
+        }
+        for (PipeCall pipeCall : pipeCalls) {
+            if (!pipeCall.isFoldable()) {
+                return;
             }
         }
-        return pipedValue;
+        try {
+            Object pipedValue = value;
+            for (PipeCall pipeCall : pipeCalls) {
+                pipedValue = pipeCall.fold(pipedValue);
+            }
+            if (isImmutable(pipedValue)) {
+                foldedValue = pipedValue;
+            }
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof Double
+                || value instanceof Float
+                || value.getClass() == BigInteger.class
+                || value.getClass() == BigDecimal.class
+                || value instanceof Enum;
+    }
+
+    /**
+     * Invoked after the pipes are linked.
+     */
+    void onPipesLinked() {
     }
 
     void setPipes(List<Pair<String, List<ValueExpr>>> pipes) {
+        setPipes(pipes, null);
+    }
+
+    /**
+     * Share the linked pipes of the other expression.
+     *
+     * @param other expression
+     */
+    void copyPipes(ValueExpr other) {
+        this.pipes = other.pipes;
+        this.pipeCalls = other.pipeCalls;
+        onPipesLinked();
+    }
+
+    /**
+     * Set the pipes and link them to the registry.
+     *
+     * @param pipes    pipes
+     * @param registry pipe registry to link, use the builtin registry if null
+     */
+    void setPipes(List<Pair<String, List<ValueExpr>>> pipes, @Nullable PipeRegistry registry) {
         this.pipes = pipes;
+        PipeCall[] calls = new PipeCall[pipes.size()];
+        for (int i = 0; i < calls.length; i++) {
+            Pair<String, List<ValueExpr>> pipe = pipes.get(i);
+            calls[i] = new PipeCall(pipe.getItem1(), pipe.getItem2(), registry);
+        }
+        this.pipeCalls = calls.length == 0 ? NO_PIPES : calls;
+        onPipesLinked();
     }
 }
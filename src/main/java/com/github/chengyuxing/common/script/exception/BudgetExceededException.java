@@ -0,0 +1,10 @@
+package com.github.chengyuxing.common.script.exception;
+
+/**
+ * Thrown when the script evaluation exceeds the execution budgets of the context.
+ */
+public class BudgetExceededException extends EvalRuntimeException {
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -4,4 +4,8 @@ public class EvalRuntimeException extends RuntimeException {
     public EvalRuntimeException(String message) {
         super(message);
     }
+
+    public EvalRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -72,23 +72,30 @@ public final class Comparators {
      * @return true or false
      */
     public static boolean compareNumber(Object a, String op, Object b) {
-        if (StringUtils.isNumber(a) && StringUtils.isNumber(b)) {
-            BigDecimal aN = new BigDecimal(a.toString());
-            BigDecimal bN = new BigDecimal(b.toString());
-            switch (op) {
-                case ">":
-                    return aN.compareTo(bN) > 0;
-                case ">=":
-                    return aN.compareTo(bN) >= 0;
-                case "<":
-                    return aN.compareTo(bN) < 0;
-                case "<=":
-                    return aN.compareTo(bN) <= 0;
-                default:
-                    throw new IllegalArgumentException("Unsupported operator: " + op);
-            }
+        int result;
+        if (isIntegral(a) && isIntegral(b)) {
+            result = Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        } else if (StringUtils.isNumber(a) && StringUtils.isNumber(b)) {
+            result = new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        } else {
+            throw new IllegalArgumentException(String.format("Invalid compare: %s %s %s, operator '%s' takes 2 numbers.", a, op, b, op));
+        }
+        switch (op) {
+            case ">":
+                return result > 0;
+            case ">=":
+                return result >= 0;
+            case "<":
+                return result < 0;
+            case "<=":
+                return result <= 0;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + op);
         }
-        throw new IllegalArgumentException(String.format("Invalid compare: %s %s %s, operator '%s' takes 2 numbers.", a, op, b, op));
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
     }
 
     /**
@@ -2,7 +2,10 @@ package com.github.chengyuxing.common.script.lang;
 
 public final class Token {
     private final TokenType type;
-    private final String value;
+    private String value;
+    private String source;
+    private int start;
+    private int end;
     private int line = -1;
     private int column = -1;
 
@@ -13,6 +16,26 @@ public final class Token {
         this.column = column;
     }
 
+    /**
+     * Construct a new Token which value is the range of the source,
+     * the value is extracted at the first access.
+     *
+     * @param type   token type
+     * @param source source
+     * @param start  start index of the value (inclusive)
+     * @param end    end index of the value (exclusive)
+     * @param line   line number
+     * @param column column number
+     */
+    public Token(TokenType type, String source, int start, int end, int line, int column) {
+        this.type = type;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.column = column;
+    }
+
     public Token(TokenType type, String value) {
         this.type = type;
         this.value = value;
@@ -23,6 +46,9 @@ public final class Token {
     }
 
     public String getValue() {
+        if (value == null) {
+            value = source.substring(start, end);
+        }
         return value;
     }
 
@@ -36,7 +62,7 @@ public final class Token {
 
     @Override
     public String toString() {
-        String s = type.name() + " (" + value.replace("\n", "\\n") + ")";
+        String s = type.name() + " (" + getValue().replace("\n", "\\n") + ")";
         if (line != -1 && column != -1) {
             s += " at line " + (line + 1) + ", column " + (column + 1);
         }
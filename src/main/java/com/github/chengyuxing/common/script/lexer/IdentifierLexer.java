@@ -16,16 +16,61 @@ import static com.github.chengyuxing.common.script.lang.Directives.*;
  * <h2>Identifier Lexer</h2>
  */
 public class IdentifierLexer {
+    private static final String[] DIRECTIVE_KEYWORDS = new String[]{
+            IF, ELSE, FI, END, SWITCH, CASE, DEFAULT, BREAK, CHOOSE, WHEN, FOR, DONE, GUARD, THROW, CHECK, VAR
+    };
+    private static final TokenType[] DIRECTIVE_TYPES = new TokenType[]{
+            TokenType.IF, TokenType.ELSE, TokenType.END_IF, TokenType.END, TokenType.SWITCH, TokenType.CASE, TokenType.DEFAULT, TokenType.BREAK,
+            TokenType.CHOOSE, TokenType.WHEN, TokenType.FOR, TokenType.END_FOR, TokenType.GUARD, TokenType.END_GUARD, TokenType.CHECK, TokenType.DEFINE_VAR
+    };
     private final String input;
     private final int line;
-    private int position;
+    private final int offset;
     private final int length;
+    private int position;
 
     public IdentifierLexer(@NotNull String input, int line) {
+        this(input, 0, input.length(), line);
+    }
+
+    /**
+     * Construct a new IdentifierLexer to scan the range of the input,
+     * the token column is relative to the start of the range.
+     *
+     * @param input source
+     * @param start start index of the range (inclusive)
+     * @param end   end index of the range (exclusive)
+     * @param line  line number
+     */
+    public IdentifierLexer(@NotNull String input, int start, int end, int line) {
         this.input = input;
         this.line = line;
-        this.position = 0;
-        this.length = input.length();
+        this.offset = start;
+        this.position = start;
+        this.length = end;
+    }
+
+    /**
+     * Find the directive which the keyword (without {@code #}) is in the range of the source, ignore case.
+     *
+     * @param source source
+     * @param start  start index of the keyword (inclusive)
+     * @param end    end index of the keyword (exclusive)
+     * @return index of the directive keyword or -1
+     */
+    static int indexOfDirective(String source, int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < DIRECTIVE_KEYWORDS.length; i++) {
+            String keyword = DIRECTIVE_KEYWORDS[i];
+            if (keyword.length() - 1 == len && source.regionMatches(true, start, keyword, 1, len)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean rangeEquals(int start, int end, String s) {
+        return end - start == s.length() && input.regionMatches(true, start, s, 0, s.length());
     }
 
     private char currentChar() {
@@ -42,229 +87,174 @@ public class IdentifierLexer {
         }
     }
 
-    private String readWhile(Predicate<Character> predicate) {
-        StringBuilder sb = new StringBuilder();
+    private void skipWhile(Predicate<Character> predicate) {
         while (position < length && predicate.test(currentChar())) {
-            sb.append(currentChar());
             advance();
         }
-        return sb.toString();
     }
 
     private boolean match(String s) {
-        if (input.startsWith(s, position)) {
+        if (input.startsWith(s, position) && position + s.length() <= length) {
             position += s.length();
             return true;
         }
         return false;
     }
 
+    private Token token(TokenType type, String value, int start) {
+        return new Token(type, value, line, start - offset);
+    }
+
+    private Token token(TokenType type, int start, int end) {
+        return new Token(type, input, start, end, line, start - offset);
+    }
+
     public List<Token> tokenize() {
         List<Token> tokens = new ArrayList<>();
         while (position < length) {
             skipWhitespace();
+            if (position >= length) {
+                break;
+            }
             char current = currentChar();
             int start = position;
             if (current == '\n') {
-                tokens.add(new Token(TokenType.NEWLINE, "\n", line, start));
+                tokens.add(token(TokenType.NEWLINE, "\n", start));
                 advance();
             } else if (current == '#') {
                 advance();
-                String keyword = readWhile(Character::isAlphabetic);
-                switch (keyword.toLowerCase()) {
-                    case "if":
-                        tokens.add(new Token(TokenType.IF, IF, line, start));
-                        break;
-                    case "else":
-                        tokens.add(new Token(TokenType.ELSE, ELSE, line, start));
-                        break;
-                    case "fi":
-                        tokens.add(new Token(TokenType.END_IF, FI, line, start));
-                        break;
-                    case "end":
-                        tokens.add(new Token(TokenType.END, END, line, start));
-                        break;
-                    case "switch":
-                        tokens.add(new Token(TokenType.SWITCH, SWITCH, line, start));
-                        break;
-                    case "case":
-                        tokens.add(new Token(TokenType.CASE, CASE, line, start));
-                        break;
-                    case "default":
-                        tokens.add(new Token(TokenType.DEFAULT, DEFAULT, line, start));
-                        break;
-                    case "break":
-                        tokens.add(new Token(TokenType.BREAK, BREAK, line, start));
-                        break;
-                    case "choose":
-                        tokens.add(new Token(TokenType.CHOOSE, CHOOSE, line, start));
-                        break;
-                    case "when":
-                        tokens.add(new Token(TokenType.WHEN, WHEN, line, start));
-                        break;
-                    case "for":
-                        tokens.add(new Token(TokenType.FOR, FOR, line, start));
-                        break;
-                    case "done":
-                        tokens.add(new Token(TokenType.END_FOR, DONE, line, start));
-                        break;
-                    case "guard":
-                        tokens.add(new Token(TokenType.GUARD, GUARD, line, start));
-                        break;
-                    case "throw":
-                        tokens.add(new Token(TokenType.END_GUARD, THROW, line, start));
-                        break;
-                    case "check":
-                        tokens.add(new Token(TokenType.CHECK, CHECK, line, start));
-                        break;
-                    case "var":
-                        tokens.add(new Token(TokenType.DEFINE_VAR, VAR, line, start));
-                        break;
-                    default:
-                        tokens.add(new Token(TokenType.PLAIN_TEXT, '#' + keyword, line, start));
-                        break;
-                }
-            } else if (current == '\'') {
-                advance();
-                String str = readWhile(c -> {
-                    if (c == '\n' || c == '\r') {
-                        throw new LexerException("Unterminated string literal at: " + position);
-                    }
-                    return c != '\'';
-                });
-                if (currentChar() != '\'') {
-                    throw new LexerException("Unterminated string literal at: " + position);
+                int keywordStart = position;
+                skipWhile(Character::isAlphabetic);
+                int idx = indexOfDirective(input, keywordStart, position);
+                if (idx != -1) {
+                    tokens.add(token(DIRECTIVE_TYPES[idx], DIRECTIVE_KEYWORDS[idx], start));
+                } else {
+                    tokens.add(token(TokenType.PLAIN_TEXT, start, position));
                 }
+            } else if (current == '\'' || current == '"') {
                 advance();
-                tokens.add(new Token(TokenType.STRING, str, line, start));
-            } else if (current == '"') {
-                advance();
-                String str = readWhile(c -> {
+                int valueStart = position;
+                skipWhile(c -> {
                     if (c == '\n' || c == '\r') {
-                        throw new LexerException("Unterminated string literal at: " + position);
+                        throw new LexerException("Unterminated string literal at: " + (position - offset));
                     }
-                    return c != '"';
+                    return c != current;
                 });
-                if (currentChar() != '"') {
-                    throw new LexerException("Unterminated string literal at: " + position);
+                if (currentChar() != current) {
+                    throw new LexerException("Unterminated string literal at: " + (position - offset));
                 }
+                tokens.add(new Token(TokenType.STRING, input, valueStart, position, line, start - offset));
                 advance();
-                tokens.add(new Token(TokenType.STRING, str, line, start));
             } else if (current == ',') {
-                tokens.add(new Token(TokenType.COMMA, ",", line, start));
+                tokens.add(token(TokenType.COMMA, ",", start));
                 advance();
             } else if (current == '|') {
                 if (match("||")) {
-                    tokens.add(new Token(TokenType.LOGIC_OR, "||", line, start));
+                    tokens.add(token(TokenType.LOGIC_OR, "||", start));
                 } else {
-                    tokens.add(new Token(TokenType.PIPE_SYMBOL, "|", line, start));
+                    tokens.add(token(TokenType.PIPE_SYMBOL, "|", start));
                     advance();
                 }
             } else if (current == '&') {
                 if (match("&&")) {
-                    tokens.add(new Token(TokenType.LOGIC_AND, "&&", line, start));
+                    tokens.add(token(TokenType.LOGIC_AND, "&&", start));
                 } else {
-                    tokens.add(new Token(TokenType.AND_SYMBOL, "&", line, start));
+                    tokens.add(token(TokenType.AND_SYMBOL, "&", start));
                     advance();
                 }
             } else if (current == '!') {
                 if (match("!=")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "!=", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "!=", start));
                 } else if (match("!~")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "!~", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "!~", start));
                 } else if (match("!@")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "!@", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "!@", start));
                 } else {
-                    tokens.add(new Token(TokenType.LOGIC_NOT, "!", line, start));
+                    tokens.add(token(TokenType.LOGIC_NOT, "!", start));
                     advance();
                 }
             } else if (current == '=') {
                 if (match("==")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "==", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "==", start));
                 } else {
-                    tokens.add(new Token(TokenType.OPERATOR, "=", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "=", start));
                     advance();
                 }
             } else if (current == '>') {
                 if (match(">=")) {
-                    tokens.add(new Token(TokenType.OPERATOR, ">=", line, start));
+                    tokens.add(token(TokenType.OPERATOR, ">=", start));
                 } else {
-                    tokens.add(new Token(TokenType.OPERATOR, ">", line, start));
+                    tokens.add(token(TokenType.OPERATOR, ">", start));
                     advance();
                 }
             } else if (current == '<') {
                 if (match("<=")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "<=", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "<=", start));
                 } else if (match("<>")) {
-                    tokens.add(new Token(TokenType.OPERATOR, "<>", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "<>", start));
                 } else {
-                    tokens.add(new Token(TokenType.OPERATOR, "<", line, start));
+                    tokens.add(token(TokenType.OPERATOR, "<", start));
                     advance();
                 }
             } else if (current == '~') {
-                tokens.add(new Token(TokenType.OPERATOR, "~", line, start));
+                tokens.add(token(TokenType.OPERATOR, "~", start));
                 advance();
             } else if (current == '@') {
-                tokens.add(new Token(TokenType.OPERATOR, "@", line, start));
+                tokens.add(token(TokenType.OPERATOR, "@", start));
                 advance();
             } else if (current == '(') {
-                tokens.add(new Token(TokenType.LPAREN, "(", line, start));
+                tokens.add(token(TokenType.LPAREN, "(", start));
                 advance();
             } else if (current == ')') {
-                tokens.add(new Token(TokenType.RPAREN, ")", line, start));
+                tokens.add(token(TokenType.RPAREN, ")", start));
                 advance();
             } else if (current == '{') {
-                tokens.add(new Token(TokenType.LBRACE, "{", line, start));
+                tokens.add(token(TokenType.LBRACE, "{", start));
                 advance();
             } else if (current == '}') {
-                tokens.add(new Token(TokenType.RBRACE, "}", line, start));
+                tokens.add(token(TokenType.RBRACE, "}", start));
                 advance();
             } else if (current == '[') {
-                tokens.add(new Token(TokenType.LBRACKET, "[", line, start));
+                tokens.add(token(TokenType.LBRACKET, "[", start));
                 advance();
             } else if (current == ']') {
-                tokens.add(new Token(TokenType.RBRACKET, "]", line, start));
+                tokens.add(token(TokenType.RBRACKET, "]", start));
                 advance();
             } else if (current == '.') {
-                tokens.add(new Token(TokenType.DOT, ".", line, start));
+                tokens.add(token(TokenType.DOT, ".", start));
                 advance();
             } else if (current == ':') {
-                tokens.add(new Token(TokenType.COLON, ":", line, start));
+                tokens.add(token(TokenType.COLON, ":", start));
                 advance();
             } else if (current == ';') {
-                tokens.add(new Token(TokenType.SEMICOLON, ";", line, start));
+                tokens.add(token(TokenType.SEMICOLON, ";", start));
                 advance();
             } else if (current == '+') {
-                tokens.add(new Token(TokenType.ADD_SYMBOL, "+", line, start));
+                tokens.add(token(TokenType.ADD_SYMBOL, "+", start));
                 advance();
             } else if (current == '-') {
-                tokens.add(new Token(TokenType.SUB_SYMBOL, "-", line, start));
+                tokens.add(token(TokenType.SUB_SYMBOL, "-", start));
                 advance();
             } else if (Character.isAlphabetic(current) || current == '_') {
-                String identifier = readWhile(c -> Character.isAlphabetic(c) || Character.isDigit(c) || c == '_');
-                switch (identifier.toLowerCase()) {
-                    case "of":
-                        tokens.add(new Token(TokenType.FOR_OF, identifier, line, start));
-                        break;
-                    case "as":
-                        tokens.add(new Token(TokenType.FOR_PROPERTY_AS, identifier, line, start));
-                        break;
-                    case "throw":
-                        tokens.add(new Token(TokenType.CHECK_THROW, identifier, line, start));
-                        break;
-                    default:
-                        tokens.add(new Token(TokenType.IDENTIFIER, identifier, line, start));
-                        break;
+                skipWhile(c -> Character.isAlphabetic(c) || Character.isDigit(c) || c == '_');
+                if (rangeEquals(start, position, "of")) {
+                    tokens.add(token(TokenType.FOR_OF, start, position));
+                } else if (rangeEquals(start, position, "as")) {
+                    tokens.add(token(TokenType.FOR_PROPERTY_AS, start, position));
+                } else if (rangeEquals(start, position, "throw")) {
+                    tokens.add(token(TokenType.CHECK_THROW, start, position));
+                } else {
+                    tokens.add(token(TokenType.IDENTIFIER, start, position));
                 }
             } else if (StringUtils.isAsciiDigit(current)) {
-                String number = readWhile(StringUtils::isAsciiDigit);
-                tokens.add(new Token(TokenType.NUMBER, number, line, start));
+                skipWhile(StringUtils::isAsciiDigit);
+                tokens.add(token(TokenType.NUMBER, start, position));
             } else {
-                String str = readWhile(c -> !Character.isWhitespace(c));
-                tokens.add(new Token(TokenType.PLAIN_TEXT, str, line, start));
+                skipWhile(c -> !Character.isWhitespace(c));
+                tokens.add(token(TokenType.PLAIN_TEXT, start, position));
             }
         }
-        tokens.add(new Token(TokenType.NEWLINE, "\n", line, position));
+        tokens.add(token(TokenType.NEWLINE, "\n", position));
         return tokens;
     }
 }
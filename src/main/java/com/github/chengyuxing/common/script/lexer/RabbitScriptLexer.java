@@ -2,7 +2,6 @@ package com.github.chengyuxing.common.script.lexer;
 
 import com.github.chengyuxing.common.script.lang.Token;
 import com.github.chengyuxing.common.script.lang.TokenType;
-import com.github.chengyuxing.common.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -20,14 +19,24 @@ public class RabbitScriptLexer {
     };
     public static final Pattern DIRECTIVES_PATTERN = Pattern.compile("(?i)\\s*(?:" + String.join("|", DIRECTIVES) + ")(?:\\s+.*|$)");
 
-    private final String[] lines;
-    private int lineNumber;
-    private final int length;
+    private static final ClassValue<Boolean> NORMALIZER_OVERRIDDEN = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != RabbitScriptLexer.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("normalizeDirectiveLine", String.class);
+                    return true;
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+            return false;
+        }
+    };
+
+    private final String input;
 
     public RabbitScriptLexer(@NotNull String input) {
-        this.lines = input.split("\n");
-        this.length = this.lines.length;
-        this.lineNumber = 0;
+        this.input = input;
     }
 
     /**
@@ -43,38 +52,83 @@ public class RabbitScriptLexer {
         return line;
     }
 
-    private String currentLine() {
-        return lineNumber < length ? lines[lineNumber] : "\0";
+    /**
+     * Checks if the range of the source is a directive line, same as {@link #DIRECTIVES_PATTERN}
+     * except the line which ends with {@code \r} is also accepted.
+     *
+     * @param s     source
+     * @param start start index of the line (inclusive)
+     * @param end   end index of the line (exclusive)
+     * @return true if the line is a directive line
+     */
+    static boolean isDirectiveLine(String s, int start, int end) {
+        int i = start;
+        while (i < end && isAsciiWhitespace(s.charAt(i))) {
+            i++;
+        }
+        if (i == end || s.charAt(i) != '#') {
+            return false;
+        }
+        for (String directive : DIRECTIVES) {
+            int next = i + directive.length();
+            if (next <= end && s.regionMatches(true, i + 1, directive, 1, directive.length() - 1)) {
+                if (next == end || isAsciiWhitespace(s.charAt(next))) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
-    private void advance() {
-        lineNumber++;
+    private static boolean isAsciiWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
-    private void skipEmptyLine() {
-        while (StringUtils.isBlank(currentLine()) && !currentLine().equals("\0")) {
-            advance();
+    private static boolean isBlank(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
         }
+        return true;
     }
 
     public List<Token> tokenize() {
         List<Token> tokens = new ArrayList<>();
-        while (lineNumber < length) {
-            skipEmptyLine();
-            String current = currentLine();
-            if (current.equals("\0")) {
-                break;
+        boolean normalize = NORMALIZER_OVERRIDDEN.get(getClass());
+        int length = input.length();
+        int lineNumber = 0;
+        int lastLine = -1;
+        int start = 0;
+        while (start < length) {
+            int end = input.indexOf('\n', start);
+            if (end == -1) {
+                end = length;
             }
-            String line = normalizeDirectiveLine(current);
-            if (DIRECTIVES_PATTERN.matcher(line).matches()) {
-                IdentifierLexer lexer = new IdentifierLexer(line, lineNumber);
-                tokens.addAll(lexer.tokenize());
-            } else {
-                tokens.add(new Token(TokenType.PLAIN_TEXT, current, lineNumber, 0));
+            if (end > start) {
+                lastLine = lineNumber;
+                if (!isBlank(input, start, end)) {
+                    if (normalize) {
+                        String current = input.substring(start, end);
+                        String line = normalizeDirectiveLine(current);
+                        if (isDirectiveLine(line, 0, line.length())) {
+                            tokens.addAll(new IdentifierLexer(line, lineNumber).tokenize());
+                        } else {
+                            tokens.add(new Token(TokenType.PLAIN_TEXT, current, lineNumber, 0));
+                        }
+                    } else if (isDirectiveLine(input, start, end)) {
+                        tokens.addAll(new IdentifierLexer(input, start, end, lineNumber).tokenize());
+                    } else {
+                        tokens.add(new Token(TokenType.PLAIN_TEXT, input, start, end, lineNumber, 0));
+                    }
+                }
             }
-            advance();
+            start = end + 1;
+            lineNumber++;
         }
-        tokens.add(new Token(TokenType.EOF, "", lineNumber, 0));
+        // the line of eof is next to the last non-empty line.
+        int eofLine = length == 0 ? 1 : lastLine + 1;
+        tokens.add(new Token(TokenType.EOF, "", eofLine, 0));
         return tokens;
     }
 }
@@ -15,4 +15,64 @@ public interface IPipe<T> {
      * @return new value
      */
     T transform(Object value, Object... params);
+
+    /**
+     * Returns true if the pipe has no side effects and the result only depends on the value and the params,
+     * the pure pipe over the constant value and params is evaluated once at compile time.
+     *
+     * @return true if the pipe is pure
+     */
+    default boolean isPure() {
+        return false;
+    }
+
+    /**
+     * Returns true if the result only depends on the value and the params.
+     *
+     * @return true if the pipe is deterministic, default same as {@link #isPure()}
+     */
+    default boolean isDeterministic() {
+        return isPure();
+    }
+
+    /**
+     * Returns true if the pipe is expensive, the result of the deterministic and expensive
+     * pipe is memoized within one execution.
+     *
+     * @return true if the pipe is expensive
+     */
+    default boolean isExpensive() {
+        return false;
+    }
+
+    /**
+     * Returns the minimum number of the params, checked at compile time when the pipe is linked
+     * by the engine with custom pipes.
+     *
+     * @return minimum number of the params
+     */
+    default int minParams() {
+        return 0;
+    }
+
+    /**
+     * Returns the maximum number of the params.
+     *
+     * @return maximum number of the params
+     * @see #minParams()
+     */
+    default int maxParams() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Compile the pipe with the constant params once at compile time, e.g. build a lookup table
+     * of the params, the compiled pipe is invoked with the same params.
+     *
+     * @param params constant params
+     * @return compiled pipe or null if the pipe does not support
+     */
+    default IPipe<T> compile(Object... params) {
+        return null;
+    }
 }
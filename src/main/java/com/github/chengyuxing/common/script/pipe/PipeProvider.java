@@ -0,0 +1,21 @@
+package com.github.chengyuxing.common.script.pipe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Pipe provider which is discovered by {@link java.util.ServiceLoader}, the provided pipes
+ * are registered into the {@link PipeRegistry#builtin() builtin registry}.
+ * <p>Declare the implementation in the file:</p>
+ * <blockquote><pre>META-INF/services/com.github.chengyuxing.common.script.pipe.PipeProvider</pre></blockquote>
+ * <p>The built-in pipes cannot be replaced by the provider.</p>
+ */
+public interface PipeProvider {
+    /**
+     * Returns the pipes to register.
+     *
+     * @return pipes keyed by the pipe name
+     */
+    @NotNull Map<String, IPipe<?>> getPipes();
+}
@@ -0,0 +1,95 @@
+package com.github.chengyuxing.common.script.pipe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Immutable pipe registry, the pipes declared by the registry take precedence over the parent registry.
+ * <p>The {@link #builtin() builtin registry} is the root of all registries.</p>
+ */
+public final class PipeRegistry {
+    private static final Logger log = LoggerFactory.getLogger(PipeRegistry.class);
+    private static final PipeRegistry BUILTIN = new PipeRegistry(null, loadBuiltinPipes());
+    private final PipeRegistry parent;
+    private final Map<String, IPipe<?>> pipes;
+
+    private PipeRegistry(PipeRegistry parent, Map<String, IPipe<?>> pipes) {
+        this.parent = parent;
+        this.pipes = pipes;
+    }
+
+    private static Map<String, IPipe<?>> loadBuiltinPipes() {
+        Map<String, IPipe<?>> pipes = new HashMap<>(BuiltinPipes.getAll());
+        for (PipeProvider provider : ServiceLoader.load(PipeProvider.class)) {
+            provider.getPipes().forEach((name, pipe) -> {
+                if (pipes.putIfAbsent(name, pipe) != null) {
+                    log.warn("pipe '{}' of {} is ignored, the name is already registered.", name, provider.getClass().getName());
+                }
+            });
+        }
+        return Collections.unmodifiableMap(pipes);
+    }
+
+    /**
+     * Returns the registry of the built-in pipes and the pipes of the {@link PipeProvider}s.
+     *
+     * @return builtin registry
+     */
+    public static @NotNull PipeRegistry builtin() {
+        return BUILTIN;
+    }
+
+    /**
+     * Returns a new registry which declares the pipes on top of this registry.
+     *
+     * @param pipes custom pipes
+     * @return new registry or this registry if the pipes is empty
+     */
+    public @NotNull PipeRegistry extend(@NotNull Map<String, IPipe<?>> pipes) {
+        if (pipes.isEmpty()) {
+            return this;
+        }
+        return new PipeRegistry(this, Collections.unmodifiableMap(new HashMap<>(pipes)));
+    }
+
+    /**
+     * Find the pipe from this registry or the parent registries.
+     *
+     * @param name pipe name
+     * @return pipe or null
+     */
+    public @Nullable IPipe<?> get(String name) {
+        IPipe<?> pipe = pipes.get(name);
+        if (pipe == null && parent != null) {
+            return parent.get(name);
+        }
+        return pipe;
+    }
+
+    /**
+     * Find the pipe which declared by this registry.
+     *
+     * @param name pipe name
+     * @return pipe or null
+     */
+    public @Nullable IPipe<?> getDeclared(String name) {
+        return pipes.get(name);
+    }
+
+    /**
+     * Returns the pipes which declared by this registry.
+     *
+     * @return declared pipes
+     */
+    public @NotNull @Unmodifiable Map<String, IPipe<?>> getDeclaredPipes() {
+        return pipes;
+    }
+}
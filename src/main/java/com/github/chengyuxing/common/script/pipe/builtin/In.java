@@ -1,15 +1,43 @@
 package com.github.chengyuxing.common.script.pipe.builtin;
 
+import com.github.chengyuxing.common.script.lang.Comparators;
 import com.github.chengyuxing.common.script.pipe.IPipe;
 
-import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
- * Value is in the array or not.
+ * Value is in the array or not, the value is compared by {@link Comparators#equals(Object, Object)}.
  */
 public class In implements IPipe<Boolean> {
     @Override
     public Boolean transform(Object value, Object... params) {
-        return Arrays.asList(params).contains(value);
+        for (Object param : params) {
+            if (Comparators.equals(value, param)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public IPipe<Boolean> compile(Object... params) {
+        Set<String> set = new HashSet<>();
+        for (Object param : params) {
+            if (param != null) {
+                set.add(param.toString());
+            }
+        }
+        return (value, ps) -> {
+            if (Comparators.isBlank(value)) {
+                return transform(value, ps);
+            }
+            return set.contains(value.toString());
+        };
     }
 }
@@ -25,4 +25,19 @@ public class Kv implements IPipe<List<KeyValue>> {
         });
         return keyValues;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 0;
+    }
+
+    @Override
+    public int maxParams() {
+        return 0;
+    }
+}
@@ -23,4 +23,19 @@ public class Length implements IPipe<Integer> {
         }
         return value.toString().length();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 0;
+    }
+
+    @Override
+    public int maxParams() {
+        return 0;
+    }
+}
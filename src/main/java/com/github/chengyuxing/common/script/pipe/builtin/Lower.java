@@ -10,4 +10,19 @@ public class Lower implements IPipe<String> {
     public String transform(Object value, Object... params) {
         return value.toString().toLowerCase();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 0;
+    }
+
+    @Override
+    public int maxParams() {
+        return 0;
+    }
+}
@@ -13,4 +13,19 @@ public class Nvl implements IPipe<Object> {
         }
         return value == null ? params[0] : value;
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 1;
+    }
+
+    @Override
+    public int maxParams() {
+        return 1;
+    }
 }
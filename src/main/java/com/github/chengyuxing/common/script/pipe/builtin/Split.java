@@ -16,4 +16,19 @@ public class Split implements IPipe<String[]> {
         }
         return value.toString().split(params[0].toString());
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 1;
+    }
+
+    @Override
+    public int maxParams() {
+        return 1;
+    }
+}
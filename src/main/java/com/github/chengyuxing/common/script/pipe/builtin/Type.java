@@ -13,4 +13,19 @@ public class Type implements IPipe<String> {
         }
         return value.getClass().getSimpleName();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 0;
+    }
+
+    @Override
+    public int maxParams() {
+        return 0;
+    }
+}
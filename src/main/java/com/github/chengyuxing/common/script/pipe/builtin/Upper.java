@@ -11,4 +11,19 @@ public class Upper implements IPipe<String> {
     public String transform(Object value, Object... params) {
         return value.toString().toUpperCase();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    @Override
+    public int minParams() {
+        return 0;
+    }
+
+    @Override
+    public int maxParams() {
+        return 0;
+    }
+}
@@ -0,0 +1,318 @@
+package com.github.chengyuxing.common.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+
+/**
+ * <h2>Multiple keywords matcher</h2>
+ * <p>Aho-Corasick automaton of the keywords, all queries scan the input once whatever
+ * the count of the keywords, immutable and thread-safe, compile once and reuse it, e.g.</p>
+ * <blockquote><pre>
+ * static final KeywordMatcher DDL = StringUtils.compileMatcher("create", "alter", "drop", "truncate");
+ * DDL.containsAny(sql);
+ * </pre></blockquote>
+ * <p>The case-insensitive matcher compares the characters as {@link String#equalsIgnoreCase(String)} does.</p>
+ *
+ * @see StringUtils#compileMatcher(String...)
+ */
+public final class KeywordMatcher {
+    private static final int ASCII = 128;
+    private final String[] keywords;
+    private final boolean ignoreCase;
+    // trie node children in the sorted ranges: labels[childStart[s] until childStart[s + 1]].
+    private final int[] childStart;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] rootNext;
+    private final int[] fail;
+    // keyword index of the node or -1.
+    private final int[] keywordOf;
+    // next node on the fail path which is a keyword or -1.
+    private final int[] outputLink;
+    private final boolean[] hasOutput;
+
+    private KeywordMatcher(String[] keywords, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        List<String> distinct = new ArrayList<>();
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> keywordOfNode = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        keywordOfNode.add(-1);
+        for (String keyword : keywords) {
+            Objects.requireNonNull(keyword, "keyword must not be null");
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = fold(keyword.charAt(i));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    keywordOfNode.add(-1);
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (keywordOfNode.get(node) == -1) {
+                keywordOfNode.set(node, distinct.size());
+                distinct.add(keyword);
+            }
+        }
+        this.keywords = distinct.toArray(new String[0]);
+
+        int size = trie.size();
+        this.childStart = new int[size + 1];
+        this.labels = new char[size - 1];
+        this.targets = new int[size - 1];
+        this.keywordOf = new int[size];
+        int p = 0;
+        for (int s = 0; s < size; s++) {
+            childStart[s] = p;
+            keywordOf[s] = keywordOfNode.get(s);
+            for (Map.Entry<Character, Integer> e : trie.get(s).entrySet()) {
+                labels[p] = e.getKey();
+                targets[p] = e.getValue();
+                p++;
+            }
+        }
+        childStart[size] = p;
+
+        this.rootNext = new int[ASCII];
+        for (int i = childStart[0]; i < childStart[1]; i++) {
+            if (labels[i] < ASCII) {
+                rootNext[labels[i]] = targets[i];
+            }
+        }
+
+        this.fail = new int[size];
+        this.outputLink = new int[size];
+        this.hasOutput = new boolean[size];
+        outputLink[0] = -1;
+        hasOutput[0] = keywordOf[0] != -1;
+        // breadth-first, the fail node is always shallower than the node.
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (int i = childStart[0]; i < childStart[1]; i++) {
+            int child = targets[i];
+            fail[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            int f = fail[s];
+            outputLink[s] = keywordOf[f] != -1 ? f : outputLink[f];
+            hasOutput[s] = keywordOf[s] != -1 || outputLink[s] != -1;
+            for (int i = childStart[s]; i < childStart[s + 1]; i++) {
+                int child = targets[i];
+                fail[child] = next(f, labels[i]);
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Compile the keywords to matcher.
+     *
+     * @param ignoreCase ignore case or not
+     * @param keywords   keywords
+     * @return keywords matcher
+     */
+    public static @NotNull KeywordMatcher of(boolean ignoreCase, String @NotNull ... keywords) {
+        return new KeywordMatcher(keywords, ignoreCase);
+    }
+
+    private char fold(char c) {
+        if (!ignoreCase) {
+            return c;
+        }
+        if (c < ASCII) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private int child(int s, char c) {
+        if (s == 0 && c < ASCII) {
+            int next = rootNext[c];
+            return next == 0 ? -1 : next;
+        }
+        int lo = childStart[s], hi = childStart[s + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private int next(int s, char c) {
+        while (true) {
+            int t = child(s, c);
+            if (t != -1) {
+                return t;
+            }
+            if (s == 0) {
+                return 0;
+            }
+            s = fail[s];
+        }
+    }
+
+    /**
+     * Returns the distinct keywords of the matcher.
+     *
+     * @return keywords
+     */
+    public @NotNull @Unmodifiable List<String> getKeywords() {
+        return Collections.unmodifiableList(Arrays.asList(keywords));
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Checks if the input contains any of the keywords.
+     *
+     * @param input input
+     * @return true if any keyword is found
+     */
+    public boolean containsAny(@NotNull CharSequence input) {
+        if (hasOutput[0]) {
+            return true;
+        }
+        int s = 0;
+        for (int i = 0, len = input.length(); i < len; i++) {
+            s = next(s, fold(input.charAt(i)));
+            if (hasOutput[s]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the input contains all the keywords.
+     *
+     * @param input input
+     * @return true if all keywords are found
+     */
+    public boolean containsAll(@NotNull CharSequence input) {
+        int remaining = keywords.length;
+        if (remaining == 0) {
+            return true;
+        }
+        BitSet found = new BitSet(remaining);
+        if (keywordOf[0] != -1) {
+            found.set(keywordOf[0]);
+            if (--remaining == 0) {
+                return true;
+            }
+        }
+        int s = 0;
+        for (int i = 0, len = input.length(); i < len; i++) {
+            s = next(s, fold(input.charAt(i)));
+            for (int o = keywordOf[s] != -1 ? s : outputLink[s]; o != -1; o = outputLink[o]) {
+                int k = keywordOf[o];
+                if (!found.get(k)) {
+                    found.set(k);
+                    if (--remaining == 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the distinct keywords which are contained by the input.
+     *
+     * @param input input
+     * @return keywords in order of the end position of the first occurrence
+     */
+    public @NotNull List<String> findAll(@NotNull CharSequence input) {
+        List<String> result = new ArrayList<>();
+        BitSet found = new BitSet(keywords.length);
+        if (keywordOf[0] != -1) {
+            found.set(keywordOf[0]);
+            result.add(keywords[keywordOf[0]]);
+        }
+        int s = 0;
+        for (int i = 0, len = input.length(); i < len && result.size() < keywords.length; i++) {
+            s = next(s, fold(input.charAt(i)));
+            for (int o = keywordOf[s] != -1 ? s : outputLink[s]; o != -1; o = outputLink[o]) {
+                int k = keywordOf[o];
+                if (!found.get(k)) {
+                    found.set(k);
+                    result.add(keywords[k]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the input starts with any of the keywords.
+     *
+     * @param input input
+     * @return true if the input starts with any keyword
+     */
+    public boolean startsWithAny(@NotNull CharSequence input) {
+        int s = 0;
+        for (int i = 0, len = input.length(); ; i++) {
+            if (keywordOf[s] != -1) {
+                return true;
+            }
+            if (i == len || (s = child(s, fold(input.charAt(i)))) == -1) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Checks if the input ends with any of the keywords.
+     *
+     * @param input input
+     * @return true if the input ends with any keyword
+     */
+    public boolean endsWithAny(@NotNull CharSequence input) {
+        int s = 0;
+        for (int i = 0, len = input.length(); i < len; i++) {
+            s = next(s, fold(input.charAt(i)));
+        }
+        // the keywords on the fail path of the last node are the suffixes of the input.
+        return hasOutput[s] || keywordOf[0] != -1;
+    }
+
+    /**
+     * Checks if the input equals any of the keywords.
+     *
+     * @param input input
+     * @return true if the input equals any keyword
+     */
+    public boolean equalsAny(@NotNull CharSequence input) {
+        int s = 0;
+        for (int i = 0, len = input.length(); i < len; i++) {
+            if ((s = child(s, fold(input.charAt(i)))) == -1) {
+                return false;
+            }
+        }
+        return keywordOf[s] != -1;
+    }
+
+    @Override
+    public String toString() {
+        return "KeywordMatcher{" +
+                "keywords=" + keywords.length +
+                ", ignoreCase=" + ignoreCase +
+                '}';
+    }
+}
@@ -2,6 +2,8 @@ package com.github.chengyuxing.common.util;
 
 import com.github.chengyuxing.common.MethodReference;
 import com.github.chengyuxing.common.PropertyMeta;
+import com.github.chengyuxing.common.metrics.Counter;
+import com.github.chengyuxing.common.metrics.Metrics;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +25,15 @@ public final class ReflectUtils {
 
     private static final Map<String, String> METHOD_REF_CACHE = new ConcurrentHashMap<>();
     private static final Map<Class<?>, Map<String, PropertyMeta>> BEAN_PROPERTY_CACHE = new ConcurrentHashMap<>();
+    private static final Counter METHOD_REF_HIT = Metrics.counter("rabbit.reflect.method-ref.hit");
+    private static final Counter METHOD_REF_MISS = Metrics.counter("rabbit.reflect.method-ref.miss");
+    private static final Counter BEAN_PROPERTY_HIT = Metrics.counter("rabbit.reflect.bean-property.hit");
+    private static final Counter BEAN_PROPERTY_MISS = Metrics.counter("rabbit.reflect.bean-property.miss");
+
+    static {
+        Metrics.gauge("rabbit.reflect.method-ref.size", METHOD_REF_CACHE::size);
+        Metrics.gauge("rabbit.reflect.bean-property.size", BEAN_PROPERTY_CACHE::size);
+    }
 
     /**
      * Generates the standard getter method name for a given field name and its type.
@@ -107,6 +118,12 @@ public final class ReflectUtils {
      * @return field name
      */
     public static <T> String getFieldName(@NotNull MethodReference<T> methodRef) {
+        String cached = METHOD_REF_CACHE.get(methodRef.getClass().getName());
+        if (cached != null) {
+            METHOD_REF_HIT.increment();
+            return cached;
+        }
+        METHOD_REF_MISS.increment();
         return METHOD_REF_CACHE.computeIfAbsent(methodRef.getClass().getName(), k -> {
             try {
                 Method writeReplace = methodRef.getClass().getDeclaredMethod("writeReplace");
@@ -133,6 +150,12 @@ public final class ReflectUtils {
      * detailed information about each property
      */
     public static Map<String, PropertyMeta> getBeanPropertyMetas(Class<?> clazz) {
+        Map<String, PropertyMeta> cached = BEAN_PROPERTY_CACHE.get(clazz);
+        if (cached != null) {
+            BEAN_PROPERTY_HIT.increment();
+            return cached;
+        }
+        BEAN_PROPERTY_MISS.increment();
         return BEAN_PROPERTY_CACHE.computeIfAbsent(clazz, c -> {
             try {
                 Map<String, PropertyMeta> map = new HashMap<>();
@@ -0,0 +1,129 @@
+package com.github.chengyuxing.common.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regex matcher over the text of a reader, the text is read into a sliding window chunk by chunk.
+ * <p>The match which hits the end of the window waits for the next chunk, the {@code overlap} chars
+ * at the end of the window are kept for the next chunk when no match is found,
+ * so the match which is not longer than the overlap is found across the chunks.</p>
+ *
+ * @see StringUtils#scan(Reader, Pattern, int, int, java.util.function.BiConsumer)
+ * @see StringUtils#foreachWindow(Reader, Pattern, int, int, int, int, java.util.function.BiFunction)
+ */
+final class SlidingWindowMatcher {
+    private final Reader reader;
+    private final int overlap;
+    private final Matcher matcher;
+    private char[] buffer;
+    private int length;
+    // absolute offset of the buffer[0].
+    private long base;
+    private boolean eof;
+
+    SlidingWindowMatcher(Reader reader, Pattern pattern, int bufferSize, int overlap) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        if (overlap < 0 || overlap >= bufferSize) {
+            throw new IllegalArgumentException("overlap must be in [0, bufferSize)");
+        }
+        this.reader = reader;
+        this.overlap = overlap;
+        this.buffer = new char[bufferSize];
+        this.matcher = pattern.matcher("");
+    }
+
+    /**
+     * Discard the chars before the index and read the next chunk.
+     *
+     * @param keepFrom the first index of the buffer to keep
+     * @return matcher of the window, the text before {@code keepFrom} is moved to index 0
+     */
+    Matcher next(int keepFrom) {
+        if (keepFrom > 0) {
+            System.arraycopy(buffer, keepFrom, buffer, 0, length - keepFrom);
+            length -= keepFrom;
+            base += keepFrom;
+        }
+        if (length == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+        try {
+            int n = reader.read(buffer, length, buffer.length - length);
+            if (n == -1) {
+                eof = true;
+            } else {
+                length += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        matcher.reset(CharBuffer.wrap(buffer, 0, length));
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        return matcher;
+    }
+
+    /**
+     * Returns true if the match is final, i.e. the following chars can not change it.
+     *
+     * @param m                  matcher
+     * @param requiredCharsAfter the chars which are required after the match
+     * @return true if the match is final
+     */
+    boolean isFinal(Matcher m, int requiredCharsAfter) {
+        return eof || (!m.hitEnd() && m.end() + requiredCharsAfter <= length);
+    }
+
+    /**
+     * Returns the index that the text before it can not be matched by the following chars.
+     *
+     * @return safe index of the window
+     */
+    int safeEnd() {
+        return eof ? length : Math.max(0, length - overlap);
+    }
+
+    /**
+     * Returns the first index of the buffer to keep for the next chunk, the chars before the search position
+     * are kept as the context of the boundary matchers and the lookbehind e.g. {@code ^}, {@code \b}.
+     *
+     * @param pos        the next search position
+     * @param keepBefore the chars which are required before the search position
+     * @return the first index to keep
+     */
+    int keepFrom(int pos, int keepBefore) {
+        return Math.max(0, pos - Math.max(keepBefore, Math.max(overlap, 1)));
+    }
+
+    /**
+     * Returns the view of the window, valid until the next chunk is read.
+     *
+     * @param start start index
+     * @param end   end index
+     * @return text view
+     */
+    CharSequence view(int start, int end) {
+        return CharBuffer.wrap(buffer, start, end - start).slice();
+    }
+
+    int length() {
+        return length;
+    }
+
+    long base() {
+        return base;
+    }
+
+    boolean isEof() {
+        return eof;
+    }
+}
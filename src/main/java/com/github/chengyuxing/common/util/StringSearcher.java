@@ -0,0 +1,241 @@
+package com.github.chengyuxing.common.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <h2>Substring searcher</h2>
+ * <p>Boyer-Moore-Horspool searcher of a needle, the skip tables are computed once,
+ * immutable and thread-safe, reuse it to search the same needle in long texts, e.g.</p>
+ * <blockquote><pre>
+ * StringSearcher searcher = StringSearcher.ignoreCase("insert into");
+ * int count = searcher.count(sqlDump);
+ * </pre></blockquote>
+ * <p>The text is any {@link CharSequence} e.g. {@link String}, {@link StringBuilder}
+ * or {@link java.nio.CharBuffer}, and the char array overloads search the array directly,
+ * the case-insensitive searcher compares the characters as {@link String#equalsIgnoreCase(String)}
+ * does without the lowercase copy of the text.</p>
+ */
+public final class StringSearcher {
+    private static final int TABLE_SIZE = 256;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private final String needle;
+    private final char[] pattern;
+    private final boolean ignoreCase;
+    // the chars which have the same low 8 bits share the slot, the shift is the minimum of them.
+    private final int[] forwardShift;
+    private final int[] backwardShift;
+
+    private StringSearcher(String needle, boolean ignoreCase) {
+        this.needle = needle;
+        this.ignoreCase = ignoreCase;
+        int m = needle.length();
+        this.pattern = new char[m];
+        for (int i = 0; i < m; i++) {
+            pattern[i] = fold(needle.charAt(i));
+        }
+        this.forwardShift = new int[TABLE_SIZE];
+        this.backwardShift = new int[TABLE_SIZE];
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            forwardShift[i] = m;
+            backwardShift[i] = m;
+        }
+        for (int i = 0; i < m - 1; i++) {
+            forwardShift[pattern[i] & TABLE_MASK] = m - 1 - i;
+        }
+        for (int i = m - 1; i > 0; i--) {
+            backwardShift[pattern[i] & TABLE_MASK] = i;
+        }
+    }
+
+    /**
+     * Returns the case-sensitive searcher of the needle.
+     *
+     * @param needle needle
+     * @return searcher
+     */
+    public static @NotNull StringSearcher of(@NotNull String needle) {
+        return new StringSearcher(needle, false);
+    }
+
+    /**
+     * Returns the case-insensitive searcher of the needle.
+     *
+     * @param needle needle
+     * @return searcher
+     */
+    public static @NotNull StringSearcher ignoreCase(@NotNull String needle) {
+        return new StringSearcher(needle, true);
+    }
+
+    public @NotNull String getNeedle() {
+        return needle;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    private char fold(char c) {
+        if (!ignoreCase) {
+            return c;
+        }
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Searches the first occurrence of the needle.
+     *
+     * @param text text
+     * @return index of the first occurrence or -1 if not found
+     */
+    public int indexOf(@NotNull CharSequence text) {
+        return indexOf(text, 0);
+    }
+
+    /**
+     * Searches the first occurrence of the needle from the index.
+     *
+     * @param text      text
+     * @param fromIndex index to start from
+     * @return index of the first occurrence or -1 if not found
+     */
+    public int indexOf(@NotNull CharSequence text, int fromIndex) {
+        int m = pattern.length;
+        int n = text.length();
+        if (fromIndex < 0) fromIndex = 0;
+        if (m == 0) return Math.min(fromIndex, n);
+        int last = m - 1;
+        for (int i = fromIndex; i <= n - m; ) {
+            char c = fold(text.charAt(i + last));
+            if (c == pattern[last]) {
+                int j = last - 1;
+                while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += forwardShift[c & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the first occurrence of the needle in the range of the char array.
+     *
+     * @param text      char array
+     * @param fromIndex start index of the range (inclusive)
+     * @param toIndex   end index of the range (exclusive)
+     * @return index of the first occurrence in the array or -1 if not found
+     */
+    public int indexOf(char @NotNull [] text, int fromIndex, int toIndex) {
+        int m = pattern.length;
+        if (fromIndex < 0) fromIndex = 0;
+        if (toIndex > text.length) toIndex = text.length;
+        if (m == 0) return fromIndex <= toIndex ? fromIndex : -1;
+        int last = m - 1;
+        for (int i = fromIndex; i <= toIndex - m; ) {
+            char c = fold(text[i + last]);
+            if (c == pattern[last]) {
+                int j = last - 1;
+                while (j >= 0 && fold(text[i + j]) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += forwardShift[c & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the last occurrence of the needle.
+     *
+     * @param text text
+     * @return index of the last occurrence or -1 if not found
+     */
+    public int lastIndexOf(@NotNull CharSequence text) {
+        return lastIndexOf(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches the last occurrence of the needle backward from the index, as {@link String#lastIndexOf(String, int)} does.
+     *
+     * @param text      text
+     * @param fromIndex the max index of the occurrence
+     * @return index of the last occurrence or -1 if not found
+     */
+    public int lastIndexOf(@NotNull CharSequence text, int fromIndex) {
+        int m = pattern.length;
+        int n = text.length();
+        int i = Math.min(fromIndex, n - m);
+        if (i < 0) return -1;
+        if (m == 0) return i;
+        while (i >= 0) {
+            char c = fold(text.charAt(i));
+            if (c == pattern[0]) {
+                int j = 1;
+                while (j < m && fold(text.charAt(i + j)) == pattern[j]) {
+                    j++;
+                }
+                if (j == m) {
+                    return i;
+                }
+            }
+            i -= backwardShift[c & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the non-overlapping occurrences of the needle.
+     *
+     * @param text text
+     * @return count of the occurrences, 0 if the needle is empty
+     */
+    public int count(@NotNull CharSequence text) {
+        int m = pattern.length;
+        if (m == 0) return 0;
+        int count = 0;
+        int i = 0;
+        while ((i = indexOf(text, i)) != -1) {
+            count++;
+            i += m;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the non-overlapping occurrences of the needle in the range of the char array.
+     *
+     * @param text      char array
+     * @param fromIndex start index of the range (inclusive)
+     * @param toIndex   end index of the range (exclusive)
+     * @return count of the occurrences, 0 if the needle is empty
+     */
+    public int count(char @NotNull [] text, int fromIndex, int toIndex) {
+        int m = pattern.length;
+        if (m == 0) return 0;
+        int count = 0;
+        int i = fromIndex;
+        while ((i = indexOf(text, i, toIndex)) != -1) {
+            count++;
+            i += m;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "StringSearcher{" +
+                "needle='" + needle + '\'' +
+                ", ignoreCase=" + ignoreCase +
+                '}';
+    }
+}
@@ -6,11 +6,24 @@ import com.github.chengyuxing.common.tuple.Pair;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.regex.Matcher;
@@ -29,6 +42,10 @@ public final class StringUtils {
      * String formatter.
      */
     public static final StringFormatter FMT = new StringFormatter();
+    // shorter text is scanned directly, the skip tables do not pay off.
+    private static final int SEARCHER_THRESHOLD = 512;
+    private static final int HASH_BUFFER_SIZE = 8192;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     /**
      * Split content by regex and save the splitters,
@@ -91,12 +108,26 @@ public final class StringUtils {
         return Pair.of(sb.toString(), found);
     }
 
+    /**
+     * Compile the keywords to the case-insensitive matcher, which checks if a string contains, starts with,
+     * ends with or equals any of the keywords, or contains all of them, in one pass whatever the count of the keywords.
+     * <p>Prefer it to the methods e.g. {@link #containsAnyIgnoreCase(String, String...)} when
+     * the same keywords are checked repeatedly.</p>
+     *
+     * @param keywords keywords
+     * @return keywords matcher
+     */
+    public static @NotNull KeywordMatcher compileMatcher(String @NotNull ... keywords) {
+        return KeywordMatcher.of(true, keywords);
+    }
+
     /**
      * Checks if the given string starts with any of the specified keywords.
      *
      * @param str      The string to check.
      * @param keywords The keywords to look for at the beginning of the string.
      * @return true if the string starts with any of the keywords, false otherwise.
+     * @see #compileMatcher(String...)
      */
     public static boolean startsWiths(@NotNull String str, String @NotNull ... keywords) {
         for (String keyword : keywords) {
@@ -181,6 +212,7 @@ public final class StringUtils {
      * @param str      The string to check.
      * @param keywords The keywords to look for at the end of the string.
      * @return true if the string ends with any of the keywords, ignoring case, false otherwise.
+     * @see #compileMatcher(String...)
      */
     public static boolean endsWithsIgnoreCase(@NotNull String str, String @NotNull ... keywords) {
         for (String keyword : keywords) {
@@ -199,6 +231,7 @@ public final class StringUtils {
      * @param target    The string to search for.
      * @param fromIndex The index from which to start the search.
      * @return The index of the first occurrence of the target string, or -1 if not found.
+     * @see StringSearcher
      */
     public static int indexOfIgnoreCase(@NotNull String source, @NotNull String target, int fromIndex) {
         int srcLen = source.length();
@@ -207,6 +240,9 @@ public final class StringUtils {
         if (fromIndex < 0) fromIndex = 0;
         if (tgtLen == 0) return fromIndex;
         if (tgtLen > srcLen) return -1;
+        if (tgtLen > 1 && srcLen - fromIndex >= SEARCHER_THRESHOLD) {
+            return StringSearcher.ignoreCase(target).indexOf(source, fromIndex);
+        }
 
         int max = srcLen - tgtLen;
         for (int i = fromIndex; i <= max; i++) {
@@ -301,6 +337,7 @@ public final class StringUtils {
      * @param source  The string to search within.
      * @param targets The strings to search for within the source string.
      * @return true if any of the target strings are found within the source string, ignoring case; false otherwise.
+     * @see #compileMatcher(String...)
      */
     public static boolean containsAnyIgnoreCase(@NotNull String source, String @NotNull ... targets) {
         for (String target : targets) {
@@ -317,6 +354,7 @@ public final class StringUtils {
      * @param source  The string to search within.
      * @param targets The strings to search for within the source string.
      * @return true if any of the target strings are found within the source string; false otherwise.
+     * @see #compileMatcher(String...)
      */
     public static boolean containsAny(@NotNull String source, String @NotNull ... targets) {
         for (String target : targets) {
@@ -333,6 +371,7 @@ public final class StringUtils {
      * @param source the string to compare against the targets
      *               * @param targets an array of strings to be compared with the source
      * @return true if the source string matches any of the target strings, ignoring case; false otherwise
+     * @see #compileMatcher(String...)
      */
     public static boolean equalsAnyIgnoreCase(@NotNull String source, String @NotNull ... targets) {
         for (String target : targets) {
@@ -381,6 +420,7 @@ public final class StringUtils {
      * @param source the string to be searched
      *               * @param targets variable number of strings that are expected to be found within the source string
      * @return true if the source string contains all of the target strings, false otherwise
+     * @see #compileMatcher(String...)
      */
     public static boolean containsAll(@NotNull String source, String @NotNull ... targets) {
         for (String target : targets) {
@@ -424,11 +464,15 @@ public final class StringUtils {
      * @param str the string to search within. If null, the method returns 0.
      * @param sub the substring to search for. If null or an empty string, the method returns 0.
      * @return the number of times the substring occurs in the string, ignoring case.
+     * @see StringSearcher
      */
     public static int countOccurrencesIgnoreCase(@NotNull String str, @NotNull String sub) {
         if (sub.isEmpty()) {
             return 0;
         }
+        if (str.length() >= SEARCHER_THRESHOLD) {
+            return StringSearcher.ignoreCase(sub).count(str);
+        }
         int count = 0;
         int fromIndex = 0;
         while ((fromIndex = indexOfIgnoreCase(str, sub, fromIndex)) != -1) {
@@ -444,6 +488,7 @@ public final class StringUtils {
      * @param str The string to search within. If null, the method returns 0.
      * @param sub The substring to search for. If null or an empty string, the method returns 0.
      * @return The number of non-overlapping occurrences of the substring in the given string.
+     * @see StringSearcher
      */
     public static int countOccurrences(@NotNull String str, @NotNull String sub) {
         if (sub.isEmpty()) {
@@ -478,7 +523,46 @@ public final class StringUtils {
         if (o == null) {
             return false;
         }
-        return NUMBER_PATTERN.matcher(o.toString()).matches();
+        if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte || o instanceof BigInteger) {
+            return true;
+        }
+        return isDecimal(o.toString());
+    }
+
+    /**
+     * Checks if the string is a plain decimal literal which matches {@link #NUMBER_PATTERN}.
+     *
+     * @param s string
+     * @return true or false
+     */
+    private static boolean isDecimal(String s) {
+        int len = s.length();
+        int i = 0;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            i++;
+        }
+        if (i == len) {
+            return false;
+        }
+        char c = s.charAt(i++);
+        if (c >= '1' && c <= '9') {
+            while (i < len && isAsciiDigit(s.charAt(i))) {
+                i++;
+            }
+        } else if (c != '0') {
+            return false;
+        }
+        if (i == len) {
+            return true;
+        }
+        if (s.charAt(i++) != '.') {
+            return false;
+        }
+        int fraction = i;
+        while (i < len && isAsciiDigit(s.charAt(i))) {
+            i++;
+        }
+        return i > fraction && i == len;
     }
 
     /**
@@ -530,7 +614,41 @@ public final class StringUtils {
      * @return a new string with all empty lines removed
      */
     public static String removeEmptyLine(@NotNull String content) {
-        return content.replaceAll("\\s*\r?\n", NEW_LINE);
+        // each whitespace run which contains line breaks is replaced by a line break, the indent after the last one is kept.
+        int len = content.length();
+        StringBuilder sb = null;
+        int copied = 0;
+        int i = 0;
+        while (i < len) {
+            if (!isRegexWhitespace(content.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int lastNewLine = -1;
+            for (char c; i < len && isRegexWhitespace(c = content.charAt(i)); i++) {
+                if (c == '\n') {
+                    lastNewLine = i;
+                }
+            }
+            if (lastNewLine == -1 || lastNewLine == start) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(len);
+            }
+            sb.append(content, copied, start).append(NEW_LINE);
+            copied = lastNewLine + 1;
+        }
+        if (sb == null) {
+            return content;
+        }
+        return sb.append(content, copied, len).toString();
+    }
+
+    // the regex '\s': [ \t\n\x0B\f\r]
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
     }
 
     /**
@@ -588,23 +706,152 @@ public final class StringUtils {
      * @return a string representing the hexadecimal value of the hash
      */
     public static @NotNull String hash(byte[] content, String algorithm) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance(algorithm);
-            byte[] digestBytes = digest.digest(content);
-            StringBuilder hexString = new StringBuilder(2 * digestBytes.length);
-            for (byte b : digestBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
+        return toHex(newDigest(algorithm).digest(content));
+    }
+
+    /**
+     * Computes the hash of the stream content using the specified algorithm, the content is read
+     * chunk by chunk without loading the whole content.
+     *
+     * @param in        input stream, not closed by this method
+     * @param algorithm the name of the hashing algorithm (e.g., "MD5", "SHA-256")
+     * @return a string representing the hexadecimal value of the hash
+     * @throws IOException if read failed
+     */
+    public static @NotNull String hash(@NotNull InputStream in, String algorithm) throws IOException {
+        MessageDigest digest = newDigest(algorithm);
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the hash of the channel content from the current position to the end using the specified algorithm,
+     * e.g. {@code FileChannel.open(path)}.
+     *
+     * @param channel   channel, not closed by this method
+     * @param algorithm the name of the hashing algorithm (e.g., "MD5", "SHA-256")
+     * @return a string representing the hexadecimal value of the hash
+     * @throws IOException if read failed
+     */
+    public static @NotNull String hash(@NotNull ReadableByteChannel channel, String algorithm) throws IOException {
+        MessageDigest digest = newDigest(algorithm);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the tree hash of the file content in parallel, the file is split into the chunks which
+     * are digested on the common pool.
+     *
+     * @param channel   file channel, not closed by this method
+     * @param algorithm the name of the hashing algorithm (e.g., "MD5", "SHA-256")
+     * @param chunkSize bytes of a chunk
+     * @return a string representing the hexadecimal value of the tree hash
+     * @throws IOException if read failed
+     * @see #treeHash(FileChannel, String, int, Executor)
+     */
+    public static @NotNull String treeHash(@NotNull FileChannel channel, String algorithm, int chunkSize) throws IOException {
+        return treeHash(channel, algorithm, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the tree hash of the file content in parallel: the file is split into the chunks of the
+     * chunk size, the chunks are digested on the executor, the result is the digest of the chunk digests
+     * in order of the chunks.
+     * <p>The tree hash is not the same as {@link #hash(ReadableByteChannel, String)} and depends on the chunk size,
+     * the fingerprints to compare must be computed by the same algorithm and chunk size.</p>
+     *
+     * @param channel   file channel, not closed by this method, the channel position is not changed
+     * @param algorithm the name of the hashing algorithm (e.g., "MD5", "SHA-256")
+     * @param chunkSize bytes of a chunk
+     * @param executor  executor to digest the chunks
+     * @return a string representing the hexadecimal value of the tree hash
+     * @throws IOException if read failed
+     */
+    public static @NotNull String treeHash(@NotNull FileChannel channel, String algorithm, int chunkSize, @NotNull Executor executor) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        MessageDigest root = newDigest(algorithm);
+        long size = channel.size();
+        int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        List<CompletableFuture<byte[]>> digests = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long from = (long) i * chunkSize;
+            long to = Math.min(size, from + chunkSize);
+            digests.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return digestRange(channel, algorithm, from, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                hexString.append(hex);
+            }, executor));
+        }
+        try {
+            for (CompletableFuture<byte[]> digest : digests) {
+                root.update(digest.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return toHex(root.digest());
+    }
+
+    private static byte[] digestRange(FileChannel channel, String algorithm, long from, long to) throws IOException {
+        MessageDigest digest = newDigest(algorithm);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HASH_BUFFER_SIZE, Math.max(1, to - from)));
+        long pos = from;
+        while (pos < to) {
+            buffer.limit((int) Math.min(buffer.capacity(), to - pos));
+            // positional read is safe to call concurrently.
+            int n = channel.read(buffer, pos);
+            if (n == -1) {
+                break;
             }
-            return hexString.toString();
+            pos += n;
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * Encodes the bytes to the lowercase hexadecimal string.
+     *
+     * @param bytes bytes
+     * @return hexadecimal string
+     */
+    public static @NotNull String toHex(byte @NotNull [] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            chars[j++] = HEX_DIGITS[b >>> 4];
+            chars[j++] = HEX_DIGITS[b & 0x0f];
+        }
+        return new String(chars);
+    }
+
     /**
      * Scan the content by regexp to provides the seg and match state.
      *
@@ -682,4 +929,207 @@ public final class StringUtils {
             }
         }
     }
+
+    /**
+     * Scan the text of the reader by the pattern, the text is read chunk by chunk, e.g.
+     * <blockquote><pre>
+     * try (BufferedReader reader = resource.getBufferedReader(StandardCharsets.UTF_8)) {
+     *     scan(reader, pattern, 65536, 256, (segment, matched) -&gt; ...);
+     * }
+     * </pre></blockquote>
+     * <p>The segments are the views of the read buffer which are valid only in the consumer,
+     * call {@code toString()} to keep it, the unmatched text may be split into several segments.</p>
+     * <p>The match which reaches the end of the chunk waits for the next chunk, {@code overlap} is
+     * the max length of the match, e.g. a match which starts in the last {@code overlap} chars
+     * of a chunk is found after the next chunk is read, the boundary matchers and the lookbehind see
+     * at most {@code overlap} chars before the unscanned text.</p>
+     *
+     * @param reader     reader, not closed by this method
+     * @param pattern    pattern
+     * @param bufferSize chars of a chunk
+     * @param overlap    chars kept at the end of the chunk for the match across the chunks, less than buffer size
+     * @param consumer   (segment, true if matched)
+     * @throws java.io.UncheckedIOException if read failed
+     * @see #scan(String, Pattern, BiConsumer)
+     */
+    public static void scan(@NotNull Reader reader,
+                            @NotNull Pattern pattern,
+                            int bufferSize,
+                            int overlap,
+                            @NotNull BiConsumer<CharSequence, Boolean> consumer
+    ) {
+        SlidingWindowMatcher window = new SlidingWindowMatcher(reader, pattern, bufferSize, overlap);
+        int pos = 0;
+        int keepFrom = 0;
+        long lastEmptyMatch = -1;
+        do {
+            Matcher m = window.next(keepFrom);
+            pos -= keepFrom;
+            m.region(pos, window.length());
+            int deferred = window.length();
+            while (m.find()) {
+                if (!window.isFinal(m, 0)) {
+                    deferred = m.start();
+                    break;
+                }
+                if (m.start() == m.end()) {
+                    // the empty match at the end of the previous window.
+                    long at = window.base() + m.start();
+                    if (at == lastEmptyMatch) {
+                        continue;
+                    }
+                    lastEmptyMatch = at;
+                }
+                if (m.start() > pos) {
+                    consumer.accept(window.view(pos, m.start()), false);
+                }
+                consumer.accept(window.view(m.start(), m.end()), true);
+                pos = m.end();
+            }
+            int flush = Math.min(window.safeEnd(), deferred);
+            if (flush > pos) {
+                consumer.accept(window.view(pos, flush), false);
+                pos = flush;
+            }
+            keepFrom = window.keepFrom(pos, 0);
+        } while (!window.isEof());
+    }
+
+    /**
+     * Scan the text of the char buffer by the pattern, e.g. the decoded memory-mapped file,
+     * the segments are the views of the buffer without copy.
+     *
+     * @param text     text, the chars between the position and the limit
+     * @param pattern  pattern
+     * @param consumer (segment, true if matched)
+     * @see #scan(String, Pattern, BiConsumer)
+     */
+    public static void scan(@NotNull CharBuffer text,
+                            @NotNull Pattern pattern,
+                            @NotNull BiConsumer<CharSequence, Boolean> consumer
+    ) {
+        Matcher m = pattern.matcher(text);
+        int lastEnd = 0;
+        while (m.find()) {
+            if (m.start() > lastEnd) {
+                consumer.accept(text.subSequence(lastEnd, m.start()), false);
+            }
+            consumer.accept(text.subSequence(m.start(), m.end()), true);
+            lastEnd = m.end();
+        }
+        if (lastEnd < text.length()) {
+            consumer.accept(text.subSequence(lastEnd, text.length()), false);
+        }
+    }
+
+    /**
+     * Foreach the window of the text of the reader which includes the pattern's founded group,
+     * the text is read chunk by chunk, the window is the view of the read buffer which is valid only in the consumer.
+     *
+     * @param reader      reader, not closed by this method
+     * @param pattern     substring pattern
+     * @param leftOffset  the text window left char offset
+     * @param rightOffset the text window right char offset
+     * @param bufferSize  chars of a chunk
+     * @param overlap     chars kept at the end of the chunk for the match across the chunks, less than buffer size
+     * @param consumer    the window and the first char index of the match, returns {@code true} to handler next element, otherwise break
+     * @throws java.io.UncheckedIOException if read failed
+     * @see #foreachWindow(String, Pattern, int, int, BiFunction)
+     * @see #scan(Reader, Pattern, int, int, BiConsumer)
+     */
+    public static void foreachWindow(@NotNull Reader reader,
+                                     @NotNull Pattern pattern,
+                                     int leftOffset,
+                                     int rightOffset,
+                                     int bufferSize,
+                                     int overlap,
+                                     @NotNull BiFunction<CharSequence, Long, Boolean> consumer
+    ) {
+        SlidingWindowMatcher window = new SlidingWindowMatcher(reader, pattern, bufferSize, overlap);
+        int keepBefore = Math.max(leftOffset, 0);
+        int requiredAfter = Math.max(rightOffset, 0);
+        int pos = 0;
+        int keepFrom = 0;
+        long lastEmptyMatch = -1;
+        do {
+            Matcher m = window.next(keepFrom);
+            pos -= keepFrom;
+            m.region(pos, window.length());
+            boolean deferred = false;
+            while (m.find()) {
+                if (!window.isFinal(m, requiredAfter)) {
+                    deferred = true;
+                    break;
+                }
+                if (m.start() == m.end()) {
+                    long at = window.base() + m.start();
+                    if (at == lastEmptyMatch) {
+                        continue;
+                    }
+                    lastEmptyMatch = at;
+                }
+                int wl = m.end() - m.start();
+                int i = leftOffset < 0
+                        ? Math.max(leftOffset, -wl)
+                        : Math.min(leftOffset, m.start());
+                int j = rightOffset < 0
+                        ? Math.max(rightOffset, -wl)
+                        : Math.min(rightOffset, window.length() - m.end());
+                int begin = m.start() - i;
+                int end = m.end() + j;
+                if (begin > end) {
+                    int temp = begin;
+                    begin = end;
+                    end = temp;
+                }
+                if (!consumer.apply(window.view(begin, end), window.base() + m.start())) {
+                    return;
+                }
+                pos = m.end();
+            }
+            if (!deferred) {
+                pos = Math.max(pos, window.safeEnd());
+            }
+            keepFrom = window.keepFrom(pos, keepBefore);
+        } while (!window.isEof());
+    }
+
+    /**
+     * Foreach the window of the text of the char buffer which includes the pattern's founded group,
+     * e.g. the decoded memory-mapped file, the window is the view of the buffer without copy.
+     *
+     * @param text        text, the chars between the position and the limit
+     * @param pattern     substring pattern
+     * @param leftOffset  the text window left char offset
+     * @param rightOffset the text window right char offset
+     * @param consumer    the window and the first char index, returns {@code true} to handler next element, otherwise break
+     * @see #foreachWindow(String, Pattern, int, int, BiFunction)
+     */
+    public static void foreachWindow(@NotNull CharBuffer text,
+                                     @NotNull Pattern pattern,
+                                     int leftOffset,
+                                     int rightOffset,
+                                     @NotNull BiFunction<CharSequence, Integer, Boolean> consumer
+    ) {
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            int wl = m.end() - m.start();
+            int i = leftOffset < 0
+                    ? Math.max(leftOffset, -wl)
+                    : Math.min(leftOffset, m.start());
+            int j = rightOffset < 0
+                    ? Math.max(rightOffset, -wl)
+                    : Math.min(rightOffset, text.length() - m.end());
+            int begin = m.start() - i;
+            int end = m.end() + j;
+            if (begin > end) {
+                int temp = begin;
+                begin = end;
+                end = temp;
+            }
+            if (!consumer.apply(text.subSequence(begin, end), m.start())) {
+                break;
+            }
+        }
+    }
 }
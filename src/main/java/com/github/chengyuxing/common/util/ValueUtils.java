@@ -2,6 +2,8 @@ package com.github.chengyuxing.common.util;
 
 import com.github.chengyuxing.common.MostDateTime;
 import com.github.chengyuxing.common.PropertyMeta;
+import com.github.chengyuxing.common.metrics.Counter;
+import com.github.chengyuxing.common.metrics.Metrics;
 import com.github.chengyuxing.common.script.lang.Token;
 import com.github.chengyuxing.common.script.lang.TokenType;
 import com.github.chengyuxing.common.script.ast.impl.KeyExpressionParser;
@@ -25,6 +27,7 @@ import java.util.function.Function;
  */
 public final class ValueUtils {
     private static final Map<Class<?>, Function<@NotNull Object, @Nullable Object>> VALUE_ADAPTORS = new HashMap<>();
+    private static final Counter KEY_PATH_DECODE = Metrics.counter("rabbit.keypath.decode");
 
     static {
         VALUE_ADAPTORS.put(String.class, Object::toString);
@@ -231,6 +234,7 @@ public final class ValueUtils {
      * @return key list
      */
     public static @NotNull @Unmodifiable List<String> decodeKeyPathExpression(String keyPath) {
+        KEY_PATH_DECODE.increment();
         IdentifierLexer lexer = new IdentifierLexer(keyPath, 0);
         List<Token> tokens = lexer.tokenize();
         KeyExpressionParser parser = new KeyExpressionParser(tokens);
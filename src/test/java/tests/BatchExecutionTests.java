@@ -0,0 +1,90 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import com.github.chengyuxing.common.script.ast.impl.PlaceholderStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+public class BatchExecutionTests {
+    private static final RabbitScriptEngine engine = new RabbitScriptEngine();
+    private static final ScriptAst ast = engine.compile("select * from test\n" +
+            "#if :id > 5\n" +
+            "where id = ${!id}\n" +
+            "#for tag of :tags; last as isLast\n" +
+            "#var t = :tag | upper\n" +
+            "and tag = ${!t}\n" +
+            "#done\n" +
+            "#fi");
+
+    private static List<Map<String, Object>> argsList() {
+        List<Map<String, Object>> argsList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            argsList.add(DataRow.of("id", i, "tags", Arrays.asList("a" + i, "b").subList(0, i % 3 == 0 ? 1 : 2)));
+        }
+        return argsList;
+    }
+
+    private static EvalResult executePositional(Map<String, Object> args) {
+        EvalContext context = new EvalContext(args, false);
+        context.setPlaceholderStyle(PlaceholderStyle.POSITIONAL);
+        return engine.execute(ast, context);
+    }
+
+    private static void assertResults(List<EvalResult> expected, List<EvalResult> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getContent(), actual.get(i).getContent());
+            Assert.assertEquals(expected.get(i).getUsedVars(), actual.get(i).getUsedVars());
+            Assert.assertEquals(expected.get(i).getParams(), actual.get(i).getParams());
+        }
+    }
+
+    @Test
+    public void testExecuteBatch() {
+        List<Map<String, Object>> argsList = argsList();
+        List<EvalResult> sequential = argsList.stream()
+                .map(args -> engine.execute(ast, new EvalContext(args)))
+                .collect(Collectors.toList());
+
+        List<EvalResult> batch = engine.executeBatch(ast, argsList).collect(Collectors.toList());
+        batch.forEach(r -> System.out.println(r.getContent()));
+        assertResults(sequential, batch);
+
+        List<EvalResult> parallel = engine.executeBatch(ast, argsList, EvalContext::new, ForkJoinPool.commonPool(), 3)
+                .collect(Collectors.toList());
+        assertResults(sequential, parallel);
+    }
+
+    @Test
+    public void testExecuteBatchGrouped() {
+        List<Map<String, Object>> argsList = argsList();
+        Map<String, List<EvalResult>> grouped = engine.executeBatchGrouped(ast, argsList, args -> {
+            EvalContext context = new EvalContext(args, false);
+            context.setPlaceholderStyle(PlaceholderStyle.POSITIONAL);
+            return context;
+        });
+        grouped.forEach((sql, results) -> System.out.println(sql + " -> " + results.size()));
+
+        List<EvalResult> sequential = argsList.stream()
+                .map(BatchExecutionTests::executePositional)
+                .collect(Collectors.toList());
+        Map<String, List<EvalResult>> expected = sequential.stream()
+                .collect(Collectors.groupingBy(EvalResult::getContent));
+        Assert.assertEquals(expected.keySet(), grouped.keySet());
+        // the groups are in order of the first occurrence, the results of each group are in order of the input arguments.
+        Assert.assertEquals(sequential.stream().map(EvalResult::getContent).distinct().collect(Collectors.toList()),
+                new ArrayList<>(grouped.keySet()));
+        grouped.forEach((sql, results) -> assertResults(expected.get(sql), results));
+    }
+}
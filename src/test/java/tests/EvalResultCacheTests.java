@@ -0,0 +1,65 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import com.github.chengyuxing.common.script.ast.impl.EvalResultCache;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EvalResultCacheTests {
+    @Test
+    public void testResultCache() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select * from test\n#if :id > 0\nwhere id = ${!id}\n#fi");
+        System.out.println(ast.getDependencies());
+        EvalResultCache cache = new EvalResultCache(100);
+        EvalResult first = cache.execute(engine, ast, new EvalContext(DataRow.of("id", 1, "other", 0)));
+        Assert.assertEquals(1, cache.size());
+        // 'other' is not a dependency.
+        EvalResult hit = cache.execute(engine, ast, new EvalContext(DataRow.of("id", 1, "other", 1)));
+        Assert.assertSame(first, hit);
+        Assert.assertEquals(1, cache.size());
+        // the dependency is changed.
+        EvalResult miss = cache.execute(engine, ast, new EvalContext(DataRow.of("id", 2, "other", 1)));
+        Assert.assertNotSame(first, miss);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("select * from test\nwhere id = '2'", miss.getContent());
+        for (int i = 0; i < 10; i++) {
+            EvalResult result = cache.execute(engine, ast, new EvalContext(DataRow.of("id", i % 2, "other", i)));
+            System.out.println(result.getContent());
+        }
+        Assert.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testResultCacheContextPipes() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("#var n = :name | prefix\nselect ${n}");
+        IPipe<String> a = (value, params) -> "a." + value;
+        IPipe<String> b = (value, params) -> "b." + value;
+        EvalResultCache cache = new EvalResultCache(100);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("select a.x", cache.execute(engine, ast, new PrefixContext(DataRow.of("name", "x"), a)).getContent());
+            Assert.assertEquals("select b.x", cache.execute(engine, ast, new PrefixContext(DataRow.of("name", "x"), b)).getContent());
+        }
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testResultCacheMutableNumber() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select * from test where id = ${id}");
+        EvalResultCache cache = new EvalResultCache(100);
+        AtomicInteger id = new AtomicInteger(1);
+        Assert.assertEquals("select * from test where id = 1", cache.execute(engine, ast, new EvalContext(DataRow.of("id", id))).getContent());
+        id.set(2);
+        Assert.assertEquals("select * from test where id = 2", cache.execute(engine, ast, new EvalContext(DataRow.of("id", id))).getContent());
+        Assert.assertEquals(0, cache.size());
+    }
+}
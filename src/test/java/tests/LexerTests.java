@@ -7,16 +7,29 @@ import com.github.chengyuxing.common.script.ast.ScriptAst;
 import com.github.chengyuxing.common.script.ast.ScriptEngine;
 import com.github.chengyuxing.common.script.ast.impl.EvalContext;
 import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import com.github.chengyuxing.common.script.ast.impl.LazyArgs;
+import com.github.chengyuxing.common.script.ast.impl.PlaceholderStyle;
+import com.github.chengyuxing.common.script.ast.impl.VarMeta;
+import com.github.chengyuxing.common.script.exception.BudgetExceededException;
+import com.github.chengyuxing.common.script.exception.EvalRuntimeException;
+import com.github.chengyuxing.common.script.exception.PipeNotFoundException;
+import com.github.chengyuxing.common.script.lang.Token;
 import com.github.chengyuxing.common.script.lexer.IdentifierLexer;
 import com.github.chengyuxing.common.script.lexer.RabbitScriptLexer;
 import com.github.chengyuxing.common.script.pipe.IPipe;
+import com.github.chengyuxing.common.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 public class LexerTests {
 
@@ -65,6 +78,12 @@ public class LexerTests {
         System.out.println(res.getUsedVars());
     }
 
+    @Test(expected = PipeNotFoundException.class)
+    public void testPipesLinkedAtCompile() {
+        RabbitScriptEngine engine = new RabbitScriptEngine(Function.identity(), Collections.singletonMap("x", new X()));
+        engine.compile("#if :id | x(2) > 5 && :name | isIdCard\n1\n#fi");
+    }
+
     @Test
     public void testCheck() {
         RabbitScriptEngine engine = new RabbitScriptEngine();
@@ -94,6 +113,286 @@ public class LexerTests {
         lexer.tokenize().forEach(System.out::println);
     }
 
+    @Test
+    public void testLexerCrlf() {
+        String lf = "select * from test\n#if :id > 0  \nwhere id = :id\n#fi\n#for x of :ids\nand x = ${x}\n#done\n";
+        String crlf = lf.replace("\n", "\r\n");
+        List<Token> lfTokens = new RabbitScriptLexer(lf).tokenize();
+        List<Token> crlfTokens = new RabbitScriptLexer(crlf).tokenize();
+        System.out.println(crlfTokens);
+        Assert.assertEquals(lfTokens.size(), crlfTokens.size());
+        for (int i = 0; i < lfTokens.size(); i++) {
+            Assert.assertEquals(lfTokens.get(i).getType(), crlfTokens.get(i).getType());
+            Assert.assertEquals(lfTokens.get(i).getValue(), crlfTokens.get(i).getValue().replace("\r", ""));
+            Assert.assertEquals(lfTokens.get(i).getLine(), crlfTokens.get(i).getLine());
+        }
+
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst lfAst = engine.compile(lf);
+        ScriptAst crlfAst = engine.compile(crlf);
+        Assert.assertEquals(lfAst.getElements().size(), crlfAst.getElements().size());
+        for (int i = 0; i < lfAst.getElements().size(); i++) {
+            Assert.assertEquals(lfAst.getLine(lfAst.getElements().get(i)), crlfAst.getLine(crlfAst.getElements().get(i)));
+        }
+        DataRow args = DataRow.of("id", 1, "ids", Arrays.asList(1, 2));
+        EvalResult res = engine.execute(crlfAst, new EvalContext(args));
+        System.out.println(res);
+        Assert.assertEquals(engine.execute(lfAst, new EvalContext(args)).getContent(), res.getContent().replace("\r", ""));
+    }
+
+    @Test
+    public void testRecompile() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        String script = "select * from test\nwhere 1 = 1\n#if :id > 0\nand id = :id\n#fi\n#if :name <> blank\nand name = :name\n#fi";
+        ScriptAst ast = engine.recompile(null, script);
+        ScriptAst ast2 = engine.recompile(ast, script.replace(":name <> blank", ":name != blank"));
+        System.out.println(ast.getElements().get(1) == ast2.getElements().get(1));
+        System.out.println(engine.execute(ast2, new EvalContext(DataRow.of("id", 1, "name", "cyx"))));
+    }
+
+    @Test
+    public void testRecompileRepeatedFragment() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        String block = "#if :id > 0\nand id = :id\n#fi\n";
+        ScriptAst ast = engine.recompile(null, "select * from test\n" + block + block);
+        ScriptAst ast2 = engine.recompile(ast, "select * from test where 1 = 1\n" + block + block);
+        for (ScriptAst a : Arrays.asList(ast, ast2)) {
+            Assert.assertNotSame(a.getElements().get(1), a.getElements().get(2));
+            Assert.assertEquals(2, a.getLine(a.getElements().get(1)));
+            Assert.assertEquals(5, a.getLine(a.getElements().get(2)));
+        }
+        Assert.assertSame(ast.getElements().get(1), ast2.getElements().get(1));
+        System.out.println(engine.execute(ast2, new EvalContext(DataRow.of("id", 1))).getContent());
+    }
+
+    @Test
+    public void testPlaceholderStyle() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select ${fields} from test where id in (${!ids})\n#for name of :names\nor name = ${!name}\n#done");
+        for (PlaceholderStyle style : PlaceholderStyle.values()) {
+            EvalContext context = new EvalContext(DataRow.of("fields", "id, name", "ids", Arrays.asList(1, 2), "names", Arrays.asList("a", "b")));
+            context.setPlaceholderStyle(style);
+            EvalResult result = engine.execute(ast, context);
+            System.out.println(result.getContent());
+            System.out.println(result.getParams());
+            System.out.println(result.getUsedVars());
+        }
+    }
+
+    @Test
+    public void testNamedPlaceholderSameValue() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        EvalContext context = new EvalContext(DataRow.of("id", 1, "a", DataRow.of("b", "NESTED"), "a_b", "NESTED"));
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        EvalResult result = engine.execute(engine.compile("select ${!a.b}, ${!a_b}\nwhere id = ${!id} or pid = ${!id}"), context);
+        Assert.assertEquals("select :a_b, :a_b\nwhere id = :id or pid = :id", result.getContent());
+        System.out.println(result.getUsedVars());
+    }
+
+    @Test(expected = EvalRuntimeException.class)
+    public void testNamedPlaceholderPathConflict() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        EvalContext context = new EvalContext(DataRow.of("a", DataRow.of("b", "NESTED"), "a_b", "FLAT"));
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        engine.execute(engine.compile("select ${!a.b}, ${!a_b}"), context);
+    }
+
+    @Test(expected = EvalRuntimeException.class)
+    public void testNamedPlaceholderScopeConflict() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        EvalContext context = new EvalContext(DataRow.of("xs", Arrays.asList(1, 2), "x_0", 99));
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        engine.execute(engine.compile("#for x of :xs\nor x = ${!x}\n#done"), context);
+    }
+
+    @Test
+    public void testFoldedPipeResultNotShared() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("#var p = 'a,b' | split(',')\nselect ${!p}");
+        EvalContext context = new EvalContext(Collections.emptyMap());
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        String[] first = (String[]) engine.execute(ast, context).getUsedVars().get("p_0");
+        first[0] = "HACKED";
+        context = new EvalContext(Collections.emptyMap());
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        String[] second = (String[]) engine.execute(ast, context).getUsedVars().get("p_0");
+        Assert.assertNotSame(first, second);
+        Assert.assertArrayEquals(new String[]{"a", "b"}, second);
+    }
+
+    @Test
+    public void testPureExpensivePipe() {
+        String script = "#if :pwd | mask = '***' && :pwd | mask <> blank && 'abc' | mask = '***'\nok\n#fi";
+        List<Object> calls = new ArrayList<>();
+        RabbitScriptEngine engine = new RabbitScriptEngine(Function.identity(), Collections.singletonMap("mask", maskPipe(calls, true)));
+        ScriptAst ast = engine.compile(script);
+        // the constant value is folded at compile time.
+        Assert.assertEquals(Collections.singletonList("abc"), calls);
+        for (int i = 1; i <= 3; i++) {
+            EvalResult result = engine.execute(ast, new EvalContext(DataRow.of("pwd", "123")));
+            Assert.assertEquals("ok", result.getContent());
+            // memoized within the execution.
+            Assert.assertEquals(1 + i, calls.size());
+        }
+        System.out.println(calls);
+
+        calls.clear();
+        engine = new RabbitScriptEngine(Function.identity(), Collections.singletonMap("mask", maskPipe(calls, false)));
+        ast = engine.compile(script);
+        Assert.assertEquals(0, calls.size());
+        for (int i = 1; i <= 3; i++) {
+            EvalResult result = engine.execute(ast, new EvalContext(DataRow.of("pwd", "123")));
+            Assert.assertEquals("ok", result.getContent());
+            Assert.assertEquals(3 * i, calls.size());
+        }
+        System.out.println(calls);
+    }
+
+    private static IPipe<String> maskPipe(List<Object> calls, boolean pure) {
+        return new IPipe<String>() {
+            @Override
+            public String transform(Object value, Object... params) {
+                calls.add(value);
+                return value.toString().replaceAll(".", "*");
+            }
+
+            @Override
+            public boolean isPure() {
+                return pure;
+            }
+
+            @Override
+            public boolean isExpensive() {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testLazyArgs() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select * from test\n#if :id > 5\nwhere id = :id and name = ${user.name}\n#fi");
+        List<String> loaded = new ArrayList<>();
+        Map<String, java.util.function.Supplier<?>> suppliers = new java.util.HashMap<>();
+        suppliers.put("id", () -> 10);
+        suppliers.put("user", () -> {
+            loaded.add("user");
+            return DataRow.of("name", "cyx");
+        });
+        suppliers.put("unused", () -> {
+            throw new IllegalStateException("should not be loaded");
+        });
+        LazyArgs args = LazyArgs.ofSuppliers(suppliers);
+        System.out.println(engine.execute(ast, new EvalContext(args)).getContent());
+        System.out.println(engine.execute(ast, new EvalContext(args)).getContent());
+        Assert.assertEquals(Collections.singletonList("user"), loaded);
+        System.out.println(args);
+        Assert.assertEquals("select * from test", engine.execute(ast, new EvalContext(LazyArgs.of(k -> k.equals("id") ? 3 : null))).getContent());
+    }
+
+    @Test
+    public void testLazyArgsNameConflictCheck() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select * from test where\n#for x of :ids\n#var t = :x\nid = ${!t} or id = ${!x}\n#done");
+        List<String> resolved = new ArrayList<>();
+        LazyArgs args = LazyArgs.of(k -> {
+            resolved.add(k);
+            return k.equals("ids") ? Arrays.asList(1, 2) : null;
+        });
+        EvalContext context = new EvalContext(args);
+        context.setPlaceholderStyle(PlaceholderStyle.NAMED);
+        System.out.println(engine.execute(ast, context).getContent());
+        // the variable names and the named placeholders do not resolve the input arguments.
+        Assert.assertEquals(Collections.singletonList("ids"), resolved);
+
+        // the resolved argument still conflicts with the variable.
+        try {
+            engine.execute(engine.compile("#var ids = 1\n${ids}"), new EvalContext(args));
+            Assert.fail();
+        } catch (EvalRuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInputPathMemo() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("#for id of :ids\n#if :user.name <> blank\n${user.name}-${id}\n#fi\n#done");
+        int[] reads = {0};
+        Map<String, Object> user = new java.util.HashMap<String, Object>() {
+            @Override
+            public Object get(Object key) {
+                reads[0]++;
+                return super.get(key);
+            }
+        };
+        user.put("name", "cyx");
+        Map<String, Object> args = DataRow.of("ids", Arrays.asList(1, 2, 3), "user", user);
+        EvalContext context = new EvalContext(args, false);
+        System.out.println(engine.execute(ast, context).getContent());
+        System.out.println("user.name reads: " + reads[0]);
+        // resolved once per execution.
+        Assert.assertEquals(1, reads[0]);
+
+        // the memoized path is discarded after reset.
+        user.put("name", "abc");
+        Assert.assertEquals("abc-1\nabc-2\nabc-3", engine.execute(ast, context.reset(args)).getContent());
+        Assert.assertEquals(2, reads[0]);
+    }
+
+    @Test
+    public void testLoopIterationsBudget() {
+        ScriptAst ast = budgetScript();
+        EvalContext context = new EvalContext(DataRow.of("ids", budgetIds()));
+        context.setMaxLoopIterations(100);
+        try {
+            new RabbitScriptEngine().execute(ast, context);
+            Assert.fail("loop iterations budget is not checked");
+        } catch (BudgetExceededException e) {
+            System.out.println(e.getMessage());
+            Assert.assertEquals("Loop iterations exceed the limit: 100", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testOutputLengthBudget() {
+        ScriptAst ast = budgetScript();
+        EvalContext context = new EvalContext(DataRow.of("ids", budgetIds()));
+        context.setMaxOutputLength(1024);
+        context.setParallelLoop(ForkJoinPool.commonPool(), 100);
+        try {
+            new RabbitScriptEngine().execute(ast, context);
+            Assert.fail("output length budget is not checked");
+        } catch (BudgetExceededException e) {
+            System.out.println(e.getMessage());
+            Assert.assertEquals("Output length exceeds the limit: 1024", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBudgetNotExceeded() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = budgetScript();
+        EvalContext context = new EvalContext(DataRow.of("ids", budgetIds()));
+        context.setMaxLoopIterations(1000);
+        context.setTimeout(java.time.Duration.ofSeconds(5));
+        String content = engine.execute(ast, context).getContent();
+        System.out.println(content.length());
+        Assert.assertEquals(engine.execute(ast, new EvalContext(DataRow.of("ids", budgetIds()))).getContent(), content);
+    }
+
+    private static ScriptAst budgetScript() {
+        return new RabbitScriptEngine().compile("select * from test where id in (\n#for id of :ids\n${id},\n#done\n)");
+    }
+
+    private static List<Integer> budgetIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
     @Test
     public void test7() {
         RabbitScriptEngine engine = new RabbitScriptEngine(line -> {
@@ -144,6 +443,88 @@ public class LexerTests {
         System.out.println(res);
     }
 
+    @Test
+    public void testReuseContext() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("#var heading = :title | upper\n" +
+                "#for user of :users; index as i; last as isLast\n" +
+                "#if :user.name != blank\n" +
+                "${i}: ${user.name} ${!user.tags} ${heading} ${missing}\n" +
+                "#fi\n" +
+                "#done\n" +
+                "${!ids}, ${user.name}, ${ heading }, ${title}");
+        List<Map<String, Object>> argsList = Arrays.asList(
+                DataRow.of("title", "a", "ids", Arrays.asList(1, 2), "users", Arrays.asList(
+                        DataRow.of("name", "x", "tags", Arrays.asList("t1", null, "t2")),
+                        DataRow.of("name", "", "tags", "t3"))),
+                DataRow.of("title", "b", "ids", new int[]{3}, "users", Collections.singletonList(
+                        DataRow.of("name", "y", "tags", null))),
+                // values containing the value holder are formatted again
+                DataRow.of("title", "c", "ids", "${title}", "users", Collections.singletonList(
+                        DataRow.of("name", "${title}", "tags", "${")), "missing", "$"));
+        EvalContext context = new EvalContext(Collections.emptyMap(), false);
+        for (Map<String, Object> args : argsList) {
+            EvalResult reused = engine.execute(ast, context.reset(args));
+            EvalResult fresh = engine.execute(ast, new EvalContext(args));
+            EvalResult formatted = engine.execute(ast, new FormatterContext(args));
+            System.out.println(reused.getContent());
+            Assert.assertEquals(fresh.getContent(), reused.getContent());
+            Assert.assertEquals(fresh.getUsedVars(), reused.getUsedVars());
+            Assert.assertEquals(formatted.getContent(), reused.getContent());
+        }
+    }
+
+    /**
+     * Formats the text by the formatter, same as the context which customizes the formatting.
+     */
+    static class FormatterContext extends EvalContext {
+        FormatterContext(Map<String, Object> args) {
+            super(args);
+        }
+
+        @Override
+        protected Pair<String, Map<String, Object>> formatScopePlainText(String text, Map<String, Object> inputs, Map<String, VarMeta> scope) {
+            return super.formatScopePlainText(text, inputs, scope);
+        }
+    }
+
+    @Test
+    public void testParallelLoop() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("insert into t(id, name) values\n" +
+                "#for user of :users; last as isLast\n" +
+                "#var name = :user.name | upper\n" +
+                "(${user.id}, '${name}')\n" +
+                "#if !:isLast\n,\n#fi\n" +
+                "#done");
+        List<DataRow> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(DataRow.of("id", i, "name", "user" + i));
+        }
+        EvalResult sequential = engine.execute(ast, new EvalContext(DataRow.of("users", users)));
+
+        EvalContext context = new EvalContext(DataRow.of("users", users));
+        context.setParallelLoop(ForkJoinPool.commonPool(), 100);
+        EvalResult parallel = engine.execute(ast, context);
+
+        Assert.assertEquals(sequential.getContent(), parallel.getContent());
+    }
+
+    @Test
+    public void testContextPipesOfSameType() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("#var n = :name | prefix\nselect ${n}");
+        IPipe<String> a = (value, params) -> "a." + value;
+        IPipe<String> b = (value, params) -> "b." + value;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("select a.x", engine.execute(ast, new PrefixContext(DataRow.of("name", "x"), a)).getContent());
+            Assert.assertEquals("select b.x", engine.execute(ast, new PrefixContext(DataRow.of("name", "x"), b)).getContent());
+        }
+        EvalContext context = new PrefixContext(DataRow.of("name", "x"), a);
+        engine.execute(ast, context);
+        Assert.assertEquals("select a.y", engine.execute(ast, context.reset(DataRow.of("name", "y"))).getContent());
+    }
+
     @Test
     public void testLexer1() {
         IdentifierLexer lexer = new IdentifierLexer("#if :id.name = 'aaa'", 0);
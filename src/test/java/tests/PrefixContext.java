@@ -0,0 +1,25 @@
+package tests;
+
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Context which declares the custom pipe {@code prefix}.
+ */
+public class PrefixContext extends EvalContext {
+    private final Map<String, IPipe<?>> pipes;
+
+    public PrefixContext(Map<String, Object> args, IPipe<?> prefix) {
+        super(args);
+        this.pipes = Collections.singletonMap("prefix", prefix);
+    }
+
+    @Override
+    protected @NotNull Map<String, IPipe<?>> getPipes() {
+        return pipes;
+    }
+}
@@ -1,7 +1,17 @@
 package tests;
 
 import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.metrics.Counter;
+import com.github.chengyuxing.common.metrics.Metrics;
+import com.github.chengyuxing.common.metrics.MetricsRegistry;
+import com.github.chengyuxing.common.metrics.Slf4jMetricsRegistry;
+import com.github.chengyuxing.common.metrics.Timer;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
 import com.github.chengyuxing.common.util.ReflectUtils;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
 import org.junit.Test;
 import tests.entity.*;
 import tests.entity.User;
@@ -12,6 +22,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class ReflectTests {
@@ -76,4 +89,85 @@ public class ReflectTests {
                     System.out.println(m.getGetter().getReturnType() == Class.class);
                 });
     }
+
+    @Test
+    public void metricsTest() throws Exception {
+        String script = "select * from user\n#if :id != blank\nwhere id = :id\n#fi";
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        List<String> plain = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            plain.add(engine.execute(engine.compile(script), new EvalContext(Collections.singletonMap("id", i))).getContent());
+        }
+        RecordingMetricsRegistry registry = new RecordingMetricsRegistry();
+        Metrics.setRegistry(registry);
+        try {
+            for (int i = 0; i < 3; i++) {
+                ReflectUtils.getBeanPropertyMetas(User.class);
+            }
+            ScriptAst ast = engine.compile(script);
+            ast = engine.recompile(engine.recompile(null, script), script.replace("select *", "select id"));
+            for (int i = 0; i < 5; i++) {
+                String content = engine.execute(ast, new EvalContext(Collections.singletonMap("id", i))).getContent();
+                System.out.println(content);
+                Assert.assertEquals(plain.get(i).replace("select *", "select id"), content);
+            }
+            registry.report();
+            System.out.println(registry.counts);
+            // the bean properties may be cached by the other tests.
+            Assert.assertEquals(3, registry.count("rabbit.reflect.bean-property.hit") + registry.count("rabbit.reflect.bean-property.miss"));
+            Assert.assertTrue(registry.count("rabbit.reflect.bean-property.miss") <= 1);
+            Assert.assertEquals(1, registry.count("rabbit.script.compile"));
+            // both fragments are parsed by the first recompile, the #if fragment is reused by the second.
+            Assert.assertEquals(3, registry.count("rabbit.script.fragment.miss"));
+            Assert.assertEquals(1, registry.count("rabbit.script.fragment.hit"));
+            Assert.assertEquals(0, registry.count("rabbit.script.recompile.fallback"));
+            Assert.assertEquals(5, registry.count("rabbit.script.execute"));
+            // the evaluator of the thread is reused.
+            Assert.assertEquals(0, registry.count("rabbit.script.evaluator.allocation"));
+        } finally {
+            Metrics.setRegistry(MetricsRegistry.NOOP);
+        }
+    }
+
+    /**
+     * Records the counter values and the timer counts besides the log report.
+     */
+    static class RecordingMetricsRegistry implements MetricsRegistry {
+        private final Slf4jMetricsRegistry delegate = new Slf4jMetricsRegistry();
+        private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        @Override
+        public @NotNull Counter counter(@NotNull String name) {
+            Counter counter = delegate.counter(name);
+            LongAdder count = counts.computeIfAbsent(name, k -> new LongAdder());
+            return n -> {
+                count.add(n);
+                counter.add(n);
+            };
+        }
+
+        @Override
+        public @NotNull Timer timer(@NotNull String name) {
+            Timer timer = delegate.timer(name);
+            LongAdder count = counts.computeIfAbsent(name, k -> new LongAdder());
+            return nanos -> {
+                count.increment();
+                timer.record(nanos);
+            };
+        }
+
+        @Override
+        public void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value) {
+            delegate.gauge(name, value);
+        }
+
+        long count(String name) {
+            LongAdder count = counts.get(name);
+            return count == null ? 0 : count.sum();
+        }
+
+        void report() {
+            delegate.report();
+        }
+    }
 }
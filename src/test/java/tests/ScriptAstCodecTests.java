@@ -0,0 +1,37 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.io.FileResource;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.ScriptAstCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ScriptAstCodecTests {
+    static String query = new FileResource("query.txt").readString(StandardCharsets.UTF_8);
+
+    @Test
+    public void testAstCodec() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        Map<String, ScriptAst> asts = new LinkedHashMap<>();
+        asts.put("query", engine.compile(query));
+        asts.put("page", engine.compile("select * from test\n#switch :type | upper\n#case 'A', 'B'\nwhere type = :type\n#break\n#default\nwhere 1 = 1\n#break\n#end"));
+        byte[] bytes = ScriptAstCodec.encodeAll(asts);
+        System.out.println(bytes.length + " bytes");
+        Map<String, ScriptAst> loaded = engine.loadAll(ByteBuffer.wrap(bytes));
+        Map<String, Object> args = DataRow.of("type", "b", "id", 5, "name", "cyx");
+        for (String name : asts.keySet()) {
+            String expected = engine.execute(asts.get(name), new EvalContext(args)).getContent();
+            String actual = engine.execute(loaded.get(name), new EvalContext(args)).getContent();
+            Assert.assertEquals(expected, actual);
+            System.out.println(actual);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.ScriptProfile;
+import com.github.chengyuxing.common.script.ast.impl.ScriptProfiler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ScriptProfilerTests {
+    @Test
+    public void testProfiler() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        String script = "select * from test where\n#for id of :ids; last as isLast\nid = ${id}\n#if !:isLast && :id | length > 0\nor\n#fi\n#done";
+        // the elements are reused from the previous version, the lines are of the current version.
+        ScriptAst ast = engine.recompile(engine.recompile(null, "-- find by ids\n" + script), script);
+        List<ScriptProfile> flushed = new ArrayList<>();
+        ScriptProfiler profiler = new ScriptProfiler(flushed::add);
+        for (int i = 0; i < 10; i++) {
+            String expected = engine.execute(ast, new EvalContext(DataRow.of("ids", Collections.nCopies(i, "a")))).getContent();
+            String actual = profiler.execute("findByIds", ast, new EvalContext(DataRow.of("ids", Collections.nCopies(i, "a")))).getContent();
+            Assert.assertEquals(expected, actual);
+        }
+        profiler.flush();
+        System.out.println(flushed);
+        Assert.assertEquals(1, flushed.size());
+
+        ScriptProfile profile = profiler.getProfile("findByIds");
+        Assert.assertNotNull(profile);
+        Assert.assertEquals(10, profile.getExecutions());
+        // 0 + 1 + ... + 9 iterations, the last iteration of each loop takes the else branch.
+        ScriptProfile.ElementProfile loop = element(profile, "for", 2);
+        Assert.assertEquals(10, loop.getCount());
+        Assert.assertArrayEquals(new long[]{1, 1, 2, 4, 2}, trim(loop.getIterationHistogram()));
+        Assert.assertEquals(45, element(profile, "text", 3).getCount());
+        ScriptProfile.ElementProfile branch = element(profile, "if", 4);
+        Assert.assertEquals(45, branch.getCount());
+        Assert.assertArrayEquals(new long[]{36, 9}, branch.getBranchHits());
+        Assert.assertEquals(36, element(profile, "text", 5).getCount());
+        Assert.assertEquals(36, profile.getPipes().get("length").getCount());
+    }
+
+    private static ScriptProfile.ElementProfile element(ScriptProfile profile, String type, int line) {
+        for (ScriptProfile.ElementProfile element : profile.getElements()) {
+            if (element.getType().equals(type) && element.getLine() == line) {
+                return element;
+            }
+        }
+        throw new AssertionError("#" + type + " at line " + line + " is not profiled: " + profile);
+    }
+
+    private static long[] trim(long[] histogram) {
+        int last = histogram.length - 1;
+        while (last > 0 && histogram[last] == 0) {
+            last--;
+        }
+        long[] values = new long[last + 1];
+        System.arraycopy(histogram, 0, values, 0, values.length);
+        return values;
+    }
+}
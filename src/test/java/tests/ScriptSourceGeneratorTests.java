@@ -0,0 +1,140 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.io.FileResource;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.CompiledScript;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import com.github.chengyuxing.common.script.ast.impl.EvalResult;
+import com.github.chengyuxing.common.script.ast.impl.ScriptSourceGenerator;
+import com.github.chengyuxing.common.script.pipe.IPipe;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class ScriptSourceGeneratorTests {
+    static String Switch = new FileResource("flow-control/switch.txt").readString(StandardCharsets.UTF_8);
+    static String If = new FileResource("flow-control/if.txt").readString(StandardCharsets.UTF_8);
+    static String choose = new FileResource("flow-control/choose.txt").readString(StandardCharsets.UTF_8);
+    static String guard = new FileResource("flow-control/guard.txt").readString(StandardCharsets.UTF_8);
+    static String pipes = new FileResource("flow-control/pipes.txt").readString(StandardCharsets.UTF_8);
+
+    @Test
+    public void testGenerateSource() {
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        ScriptAst ast = engine.compile("select * from test where\n#for id of :ids; last as isLast\nid = ${id}\n#if !:isLast\nor\n#fi\n#done");
+        System.out.println(ScriptSourceGenerator.generate(ast, "com.example.scripts", "FindByIds"));
+    }
+
+    @Test
+    public void testGeneratedSourceMatchesInterpreter() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        RabbitScriptEngine engine = new RabbitScriptEngine();
+        Function<Map<String, Object>, EvalContext> withX = args -> new EvalContext(args) {
+            @Override
+            protected @NotNull Map<String, IPipe<?>> getPipes() {
+                return Collections.singletonMap("x", new X());
+            }
+        };
+        Object[][] cases = {
+                {If, DataRow.of("jssj", "nubll", "kssj", "2022-12-12", "name", "cyx", "id", "2")},
+                {If, DataRow.of("jssj", "", "kssj", "2024", "name", "abc", "id", 100)},
+                {"select * from test where\n#for id of :ids; last as isLast\nid = ${id}\n#if !:isLast\nor\n#fi\n#done", DataRow.of("ids", Arrays.asList(1, 2, 3))},
+                {"#for user of :users | split(','); index as idx; first as isFirst\n#if !:isFirst\nunion\n#fi\nselect ${!user}, ${idx}\n#done", DataRow.of("users", "a,b,c")},
+                {Switch, DataRow.of("name", "ak")},
+                {Switch, DataRow.of("name", "c")},
+                {choose, DataRow.of("id", "B")},
+                {choose, DataRow.of("id", "a")},
+                {choose, DataRow.of("id", "xyz")},
+                {guard, DataRow.of("id", 90)},
+                {guard, DataRow.of("id", 5)},
+                {pipes, DataRow.of("name", "cyx", "address", "kunming", "id", 5, "list", DataRow.of("id", 1, "age", 22), "users", "a,b,c,d", "home", null)},
+        };
+        for (int i = 0; i < cases.length; i++) {
+            String script = (String) cases[i][0];
+            @SuppressWarnings("unchecked")
+            Map<String, Object> args = (Map<String, Object>) cases[i][1];
+            ScriptAst ast = engine.compile(script);
+            CompiledScript compiled = compileInMemory(compiler, "tests.generated", "Script" + i, ScriptSourceGenerator.generate(ast, "tests.generated", "Script" + i));
+            Object expected = evalOrError(() -> engine.execute(ast, withX.apply(args)));
+            Object actual = evalOrError(() -> compiled.execute(withX.apply(args)));
+            if (expected instanceof EvalResult && actual instanceof EvalResult) {
+                EvalResult e = (EvalResult) expected, a = (EvalResult) actual;
+                Assert.assertEquals(script, e.getContent(), a.getContent());
+                Assert.assertEquals(script, e.getUsedVars().keySet(), a.getUsedVars().keySet());
+                for (String key : e.getUsedVars().keySet()) {
+                    Assert.assertTrue(script, Objects.deepEquals(e.getUsedVars().get(key), a.getUsedVars().get(key)));
+                }
+                Assert.assertArrayEquals(script, e.getParams().toArray(), a.getParams().toArray());
+            } else {
+                Assert.assertEquals(script, expected, actual);
+            }
+        }
+    }
+
+    private static Object evalOrError(Supplier<EvalResult> execution) {
+        try {
+            return execution.get();
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static CompiledScript compileInMemory(JavaCompiler compiler, String packageName, String className, String source) throws Exception {
+        String fullName = packageName + "." + className;
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classes.computeIfAbsent(name, k -> new ByteArrayOutputStream());
+                    }
+                };
+            }
+        };
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + fullName.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        String classpath = System.getProperty("java.class.path") + File.pathSeparator +
+                Paths.get(CompiledScript.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        StringWriter out = new StringWriter();
+        boolean ok = compiler.getTask(out, fileManager, null, Arrays.asList("-classpath", classpath, "-nowarn"), null, Collections.singletonList(file)).call();
+        Assert.assertTrue(out + "\n" + source, ok);
+        ClassLoader loader = new ClassLoader(ScriptSourceGeneratorTests.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] b = bytes.toByteArray();
+                return defineClass(name, b, 0, b.length);
+            }
+        };
+        return (CompiledScript) loader.loadClass(fullName).getDeclaredConstructor().newInstance();
+    }
+}
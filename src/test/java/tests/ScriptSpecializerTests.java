@@ -0,0 +1,82 @@
+package tests;
+
+import com.github.chengyuxing.common.DataRow;
+import com.github.chengyuxing.common.script.RabbitScriptEngine;
+import com.github.chengyuxing.common.script.ast.ScriptAst;
+import com.github.chengyuxing.common.script.ast.impl.EvalContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ScriptSpecializerTests {
+    private static final RabbitScriptEngine engine = new RabbitScriptEngine();
+
+    @Test
+    public void testSpecialize() {
+        ScriptAst ast = engine.compile("select * from ${table}\n#if :dialect = 'pg' && :id > 0\nwhere id = :id::int\n#else\nwhere id = :id\n#fi");
+        ScriptAst residual = engine.specialize(ast, DataRow.of("dialect", "pg", "table", "test.user"));
+        System.out.println(residual.getElements());
+        Assert.assertEquals(ast.getDependencies().size() - 2, residual.getDependencies().size());
+        for (Object id : Arrays.asList(1, 0)) {
+            assertSpecialized(ast, DataRow.of("dialect", "pg", "table", "test.user"), DataRow.of("id", id));
+        }
+    }
+
+    @Test
+    public void testSpecializeBranches() {
+        ScriptAst ast = engine.compile("select ${!fields} from ${table}\n" +
+                "where 1 = 1\n" +
+                "#var d = :dialect | upper\n" +
+                "#choose\n" +
+                "#when :dialect = 'pg'\n" +
+                "and a = 1\n" +
+                "#break\n" +
+                "#when :name != blank\n" +
+                "and name = :name\n" +
+                "#break\n" +
+                "#default\n" +
+                "and b = 2\n" +
+                "#break\n" +
+                "#end\n" +
+                "#switch :mode | upper\n" +
+                "#case 'A', 'B'\n" +
+                "and mode = ${mode}\n" +
+                "#break\n" +
+                "#default\n" +
+                "and mode is null\n" +
+                "#break\n" +
+                "#end\n" +
+                "#for id of :ids; index as i\n" +
+                "#if :i > 0\n" +
+                "or\n" +
+                "#fi\n" +
+                "id = ${id} and dialect = ${d}\n" +
+                "#done");
+        assertSpecialized(ast, DataRow.of("dialect", "pg", "table", "t", "fields", Arrays.asList("a", "b")),
+                DataRow.of("name", "cyx", "mode", "b", "ids", Arrays.asList(1, 2, 3)));
+        assertSpecialized(ast, DataRow.of("dialect", "mysql", "table", "t", "mode", "a"),
+                DataRow.of("name", "cyx", "fields", "a", "ids", Arrays.asList(1, 2)));
+        assertSpecialized(ast, DataRow.of("dialect", "mysql", "table", "t", "mode", "c"),
+                DataRow.of("name", "", "fields", "a", "ids", Collections.emptyList()));
+        assertSpecialized(ast, DataRow.of("mode", "c", "ids", Arrays.asList(1, 2)),
+                DataRow.of("dialect", "oracle", "table", "t", "fields", "a", "name", "x"));
+    }
+
+    /**
+     * Asserts the residual script renders the same result as the original script.
+     */
+    private static void assertSpecialized(ScriptAst ast, Map<String, Object> knownArgs, Map<String, Object> restArgs) {
+        Map<String, Object> args = new HashMap<>(restArgs);
+        args.putAll(knownArgs);
+        ScriptAst residual = engine.specialize(ast, knownArgs);
+        String expected = engine.execute(ast, new EvalContext(args)).getContent();
+        // the known arguments are still required by the quoted value holders.
+        String actual = engine.execute(residual, new EvalContext(args)).getContent();
+        System.out.println(actual);
+        Assert.assertEquals(expected, actual);
+    }
+}
@@ -2,19 +2,26 @@ package tests;
 
 import com.github.chengyuxing.common.DataRow;
 import com.github.chengyuxing.common.StringFormatter;
+import com.github.chengyuxing.common.console.Printer;
+import com.github.chengyuxing.common.console.Style;
 import com.github.chengyuxing.common.io.ClassPathResource;
 import com.github.chengyuxing.common.io.FileResource;
 import com.github.chengyuxing.common.io.TypedProperties;
 import com.github.chengyuxing.common.script.lang.Comparators;
 import com.github.chengyuxing.common.script.pipe.builtin.Kv;
 import com.github.chengyuxing.common.tuple.Pair;
+import com.github.chengyuxing.common.util.KeywordMatcher;
+import com.github.chengyuxing.common.util.StringSearcher;
 import com.github.chengyuxing.common.util.ValueUtils;
 import com.github.chengyuxing.common.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -466,4 +473,76 @@ public class StringTests {
     public void testJackson() {
         DataRow row = DataRow.of("now", LocalDateTime.now(), "current", new Date());
     }
+
+    @Test
+    public void testKeywordMatcher() {
+        KeywordMatcher matcher = StringUtils.compileMatcher("select", "insert", "update", "delete", "drop", "truncate");
+        System.out.println(matcher.containsAny("INSERT into test.user values (1)"));
+        System.out.println(matcher.containsAll("select 1; drop table test.user"));
+        System.out.println(matcher.findAll("drop table test.user; Select 1 -- update"));
+        System.out.println(matcher.startsWithAny("Update test.user set name = 'cyx'"));
+        System.out.println(matcher.endsWithAny("alter table test.user DROP"));
+        System.out.println(matcher.equalsAny("DeLeTe"));
+    }
+
+    @Test
+    public void testStringSearcher() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("insert into test.user (id, name) values (").append(i).append(", 'cyx');\n");
+            sb.append("INSERT INTO test.log (id) values (").append(i).append(");\n");
+        }
+        StringSearcher searcher = StringSearcher.ignoreCase("Insert Into");
+        System.out.println(searcher.count(sb));
+        System.out.println(searcher.indexOf(sb, 10));
+        System.out.println(searcher.lastIndexOf(sb));
+        char[] chars = sb.toString().toCharArray();
+        System.out.println(searcher.count(chars, 0, chars.length));
+        System.out.println(searcher.indexOf(CharBuffer.wrap(chars, 100, 200)));
+        System.out.println(StringSearcher.of("INSERT").count(sb));
+    }
+
+    @Test
+    public void testStreamingScan() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("select ${fields} from test.user where id = ${!id").append(i).append("};\n");
+        }
+        Pattern pattern = Pattern.compile("\\$\\{\\s*!?[\\w.]+\\s*}");
+        AtomicInteger matches = new AtomicInteger();
+        StringUtils.scan(new StringReader(sb.toString()), pattern, 64, 16, (segment, matched) -> {
+            if (matched) {
+                matches.incrementAndGet();
+            }
+        });
+        System.out.println(matches.get());
+        StringUtils.foreachWindow(new StringReader(sb.toString()), pattern, 3, 1, 64, 16, (window, index) -> {
+            System.out.println(index + ": " + window);
+            return index < 200;
+        });
+        StringUtils.scan(CharBuffer.wrap(sb, 0, 60), pattern, (segment, matched) -> System.out.println(matched + ": " + segment));
+    }
+
+    @Test
+    public void testStreamingHash() throws IOException {
+        ClassPathResource resource = new ClassPathResource("me.sql");
+        System.out.println(resource.hash("SHA-256"));
+        System.out.println(StringUtils.hash(resource.readBytes(), "SHA-256"));
+        Path path = Paths.get(resource.getURL().getPath());
+        try (FileChannel channel = FileChannel.open(path)) {
+            System.out.println(StringUtils.hash(channel, "SHA-256"));
+            System.out.println(StringUtils.treeHash(channel, "SHA-256", 256));
+        }
+        System.out.println(StringUtils.toHex(new byte[]{0, 15, 16, (byte) 255}));
+    }
+
+    @Test
+    public void testTextKernels() {
+        System.out.println(StringUtils.removeEmptyLine("select *\n  \t\r\n\nfrom test.user  \n where id = 1\n"));
+        System.out.println(StringUtils.isNumber(12L));
+        System.out.println(StringUtils.isNumber("-3.14"));
+        System.out.println(StringUtils.isNumber("1.0E10"));
+        System.out.println(StringUtils.isNumber(".5"));
+        System.out.println(Printer.colorful("\033[32mok\033[0m done", Style.RED));
+    }
 }